@@ -0,0 +1,214 @@
+package com.touniba.common.util.benchmark;
+
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.touniba.common.util.BytesUtils;
+
+/**
+ * Benchmarks of {@link BytesUtils}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BytesUtilsBenchmark {
+    private static final int COLUMN_SIZE = 1 << 16;
+
+    private long longValue = 0x0123456789ABCDEFL;
+    private int intValue = 0x01234567;
+    private BigDecimal decimal = new BigDecimal("12345.67");
+    private String string = "common-util benchmark string";
+
+    private byte[] longBytes;
+    private byte[] intBytes;
+    private byte[] decimalBytes;
+    private byte[] compactDecimalBytes;
+    private byte[] stringBytes;
+    private byte[] stringScratch = new byte[256];
+    private long[] longColumn;
+    private byte[] longColumnBytes;
+    private long[] idColumn;
+    private byte[] packedIds;
+    private byte[] deltaIds;
+    private int idIndex;
+    private byte[] key;
+    private byte[] otherKey;
+    private byte[] page;
+    private byte[] otherPage;
+
+    @Setup
+    public void setup() {
+        longBytes = BytesUtils.toBytes(longValue);
+        intBytes = BytesUtils.toBytes(intValue);
+        decimalBytes = BytesUtils.toBytes(decimal);
+        compactDecimalBytes = BytesUtils.toCompactBytes(decimal);
+        stringBytes = BytesUtils.toBytes(string);
+        longColumn = new long[COLUMN_SIZE];
+        for (int i = 0; i < COLUMN_SIZE; i++) {
+            longColumn[i] = longValue * i;
+        }
+        longColumnBytes = new byte[COLUMN_SIZE * BytesUtils.SIZEOF_LONG];
+        // sorted ids with gaps of 1 to 16
+        idColumn = new long[COLUMN_SIZE];
+        long id = 1L << 40;
+        for (int i = 0; i < COLUMN_SIZE; i++) {
+            id += 1 + (i * 7 & 15);
+            idColumn[i] = id;
+        }
+        packedIds = BytesUtils.toPackedBytes(idColumn);
+        deltaIds = BytesUtils.toDeltaBytes(idColumn);
+        // keys sharing a long prefix, as in a sorted index
+        key = new byte[64];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) i;
+        }
+        otherKey = key.clone();
+        otherKey[otherKey.length - 3]++;
+        // 1 KB values differing in the last byte, the whole range is scanned
+        page = new byte[1024];
+        otherPage = page.clone();
+        otherPage[otherPage.length - 1]++;
+    }
+
+    @Benchmark
+    public byte[] toBytesLong() {
+        return BytesUtils.toBytes(longValue);
+    }
+
+    @Benchmark
+    public long toLong() {
+        return BytesUtils.toLong(longBytes);
+    }
+
+    @Benchmark
+    public byte[] toBytesInt() {
+        return BytesUtils.toBytes(intValue);
+    }
+
+    @Benchmark
+    public int toInt() {
+        return BytesUtils.toInt(intBytes);
+    }
+
+    @Benchmark
+    public byte[] toBytesBigDecimal() {
+        return BytesUtils.toBytes(decimal);
+    }
+
+    @Benchmark
+    public BigDecimal toBigDecimal() {
+        return BytesUtils.toBigDecimal(decimalBytes);
+    }
+
+    @Benchmark
+    public byte[] toCompactBytesBigDecimal() {
+        return BytesUtils.toCompactBytes(decimal);
+    }
+
+    @Benchmark
+    public BigDecimal toCompactBigDecimal() {
+        return BytesUtils.toCompactBigDecimal(compactDecimalBytes, 0);
+    }
+
+    @Benchmark
+    public byte[] toBytesString() {
+        return BytesUtils.toBytes(string);
+    }
+
+    @Benchmark
+    public String toStringBytes() {
+        return BytesUtils.toString(stringBytes);
+    }
+
+    @Benchmark
+    public int putString() {
+        return BytesUtils.putString(stringScratch, 0, string);
+    }
+
+    @Benchmark
+    public String newStringBytes() {
+        return new String(stringBytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] putLongsColumn() {
+        BytesUtils.putLongs(longColumnBytes, 0, longColumn, 0, COLUMN_SIZE, ByteOrder.BIG_ENDIAN);
+        return longColumnBytes;
+    }
+
+    @Benchmark
+    public byte[] putLongColumnLoop() {
+        int offset = 0;
+        for (long value : longColumn) {
+            offset = BytesUtils.putBytes(longColumnBytes, offset, BytesUtils.toBytes(value), 0, BytesUtils.SIZEOF_LONG);
+        }
+        return longColumnBytes;
+    }
+
+    @Benchmark
+    public long[] getLongsColumn() {
+        BytesUtils.getLongs(longColumnBytes, 0, longColumn, 0, COLUMN_SIZE, ByteOrder.BIG_ENDIAN);
+        return longColumn;
+    }
+
+    @Benchmark
+    public int putPackedIds() {
+        return BytesUtils.putPacked(longColumnBytes, 0, idColumn, 0, COLUMN_SIZE);
+    }
+
+    @Benchmark
+    public int getPackedIds() {
+        return BytesUtils.getPacked(packedIds, 0, longColumn, 0);
+    }
+
+    @Benchmark
+    public long getPackedId() {
+        idIndex = (idIndex + 7919) & (COLUMN_SIZE - 1);
+        return BytesUtils.getPacked(packedIds, 0, idIndex);
+    }
+
+    @Benchmark
+    public int putDeltaIds() {
+        return BytesUtils.putDeltas(longColumnBytes, 0, idColumn, 0, COLUMN_SIZE);
+    }
+
+    @Benchmark
+    public int getDeltaIds() {
+        return BytesUtils.getDeltas(deltaIds, 0, longColumn, 0);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return BytesUtils.compareTo(key, otherKey);
+    }
+
+    @Benchmark
+    public int compareTo1K() {
+        return BytesUtils.compareTo(page, otherPage);
+    }
+
+    /**
+     * Unsigned byte loop, the baseline for {@link #compareTo1K()}.
+     */
+    @Benchmark
+    public int compareToByteLoop1K() {
+        for (int i = 0; i < page.length; i++) {
+            int a = page[i] & 0xff;
+            int b = otherPage[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+}
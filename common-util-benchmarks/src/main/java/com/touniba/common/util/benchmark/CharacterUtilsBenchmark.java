@@ -0,0 +1,27 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.touniba.common.util.CharacterUtils;
+
+/**
+ * Benchmarks of {@link CharacterUtils#objectToString(Object, String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CharacterUtilsBenchmark {
+    private ReflectUtilsBenchmark.Bean bean = new ReflectUtilsBenchmark.Bean();
+
+    @Benchmark
+    public String objectToString() {
+        return CharacterUtils.objectToString(bean, ",");
+    }
+}
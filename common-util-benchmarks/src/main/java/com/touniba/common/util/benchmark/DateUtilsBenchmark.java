@@ -0,0 +1,35 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.touniba.common.util.DateUtils;
+
+/**
+ * Benchmarks of {@link DateUtils#formatDate(Date, String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DateUtilsBenchmark {
+    private Date date = new Date(1539225000000L);
+
+    @Benchmark
+    public String formatDate() {
+        return DateUtils.formatDate(date, "yyyy-MM-dd HH:mm:ss");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String formatDateContended() {
+        return DateUtils.formatDate(date, "yyyy-MM-dd HH:mm:ss");
+    }
+}
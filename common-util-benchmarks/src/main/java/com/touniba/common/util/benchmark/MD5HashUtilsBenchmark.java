@@ -0,0 +1,91 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.touniba.common.util.MD5HashUtils;
+
+/**
+ * Benchmarks of {@link MD5HashUtils}, the makeSignatureThreads variants and the contended one run the same digest
+ * on 1, 2, 4 threads and all cores to show how digesting scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MD5HashUtilsBenchmark {
+    @Param({"64", "4096"})
+    private int size;
+
+    private byte[] data;
+    private byte[][] batch;
+    private long[] result;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        data = new byte[size];
+        random.nextBytes(data);
+        batch = new byte[1024][];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new byte[size];
+            random.nextBytes(batch[i]);
+        }
+        result = new long[batch.length << 1];
+    }
+
+    @Benchmark
+    public String makeSignature() {
+        return MD5HashUtils.makeSignature(data);
+    }
+
+    @Benchmark
+    public String makeSignatureWithLength() {
+        return MD5HashUtils.makeSignatureWithLength(data);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String makeSignatureThreads1() {
+        return MD5HashUtils.makeSignature(data);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public String makeSignatureThreads2() {
+        return MD5HashUtils.makeSignature(data);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String makeSignatureThreads4() {
+        return MD5HashUtils.makeSignature(data);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String makeSignatureContended() {
+        return MD5HashUtils.makeSignature(data);
+    }
+
+    @Benchmark
+    public long[] digestBatch() {
+        MD5HashUtils.digestBatch(batch, result);
+        return result;
+    }
+
+    @Benchmark
+    public long[] digestBatchParallel() {
+        MD5HashUtils.digestBatch(batch, result, true);
+        return result;
+    }
+}
@@ -0,0 +1,29 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.touniba.common.util.NetUtils;
+
+/**
+ * Benchmarks of {@link NetUtils#getDomainByHost(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NetUtilsBenchmark {
+    @Param({"www.example.com", "static.news.example.com.cn", "192.168.1.10"})
+    private String host;
+
+    @Benchmark
+    public String getDomainByHost() {
+        return NetUtils.getDomainByHost(host);
+    }
+}
@@ -0,0 +1,63 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.touniba.common.util.ReflectUtils;
+
+/**
+ * Benchmarks of {@link ReflectUtils#getValue(Object, String)} and {@link ReflectUtils#setValue(Object, String, Object...)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReflectUtilsBenchmark {
+    private Bean bean = new Bean();
+
+    @Benchmark
+    public Object getValue() {
+        return ReflectUtils.getValue(bean, "name");
+    }
+
+    @Benchmark
+    public boolean setValue() {
+        return ReflectUtils.setValue(bean, "age", 18);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object getValueContended() {
+        return ReflectUtils.getValue(bean, "name");
+    }
+
+    /**
+     * Sample bean with getters and setters.
+     */
+    public static class Bean {
+        private String name = "common-util";
+        private int age;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.touniba.common.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.touniba.common.util.SignUtil;
+
+/**
+ * Benchmarks of {@link SignUtil}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SignUtilBenchmark {
+    @Param({"MD5", "SHA-256"})
+    private String algorithm;
+
+    private String data = "appId=10001&nonce=8f14e45fceea167a5a36dedd4bea2543&timestamp=1539225000&amount=100.00";
+
+    @Benchmark
+    public String getHexSign() {
+        return SignUtil.getHexSign(data, "UTF-8", algorithm, true);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getHexSignContended() {
+        return SignUtil.getHexSign(data, "UTF-8", algorithm, true);
+    }
+}
@@ -0,0 +1,41 @@
+package com.touniba.common.util.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.w3c.dom.Document;
+
+import com.touniba.common.util.XmlUtils;
+
+/**
+ * Benchmarks of {@link XmlUtils#read(java.io.InputStream)}, the contended variant shows the cost of its shared builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class XmlUtilsBenchmark {
+    private byte[] xml = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<order id=\"10001\"><item sku=\"A-1\" count=\"2\">apple</item>"
+            + "<item sku=\"B-2\" count=\"1\">banana</item><amount>100.00</amount></order>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Document read() throws IOException {
+        return XmlUtils.read(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Document readContended() throws IOException {
+        return XmlUtils.read(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,367 @@
+package com.touniba.common.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of heap and direct buffers in power of two size classes from {@link #MIN_BUFFER_SIZE}
+ * to {@link #MAX_BUFFER_SIZE}.
+ * <p>
+ * A released buffer up to {@link #MAX_THREAD_CACHED_SIZE} goes to a small cache of the releasing thread,
+ * other buffers and those the cache has no room for go to an arena shared by all threads. The thread caches
+ * and the arena together hold at most the configured number of bytes per kind, the rest is left to
+ * the garbage collector. A request larger than {@link #MAX_BUFFER_SIZE} is allocated with the exact size
+ * and never pooled.
+ * <p>
+ * A buffer must not be used after it is released, nor released twice.
+ */
+public class BufferPool {
+    public static final int MIN_BUFFER_SIZE = 1 << 10;
+    public static final int MAX_BUFFER_SIZE = 1 << 22;
+    /**
+     * Number of buffers of every size class cached by a thread.
+     */
+    public static final int THREAD_CACHE_SIZE = 4;
+    /**
+     * Largest buffer cached by a thread, larger buffers go to the shared arena.
+     */
+    public static final int MAX_THREAD_CACHED_SIZE = 1 << 16;
+    /**
+     * Maximum number of bytes cached by a thread, per kind.
+     */
+    public static final int THREAD_CACHE_BYTES = 1 << 18;
+    public static final long DEFAULT_MAX_ARENA_BYTES = 64L << 20;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1;
+    private static final int CACHED_SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_THREAD_CACHED_SIZE) - MIN_SHIFT + 1;
+
+    private static final BufferPool DEFAULT = new BufferPool(DEFAULT_MAX_ARENA_BYTES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Arena<byte[]> heap;
+    private final Arena<ByteBuffer> direct;
+
+    /**
+     * @param maxArenaBytes maximum number of bytes kept by the thread caches and the shared arena,
+     *                      for heap and direct buffers each
+     */
+    public BufferPool(long maxArenaBytes) {
+        AssertUtils.checkArgument(maxArenaBytes >= 0, "Wrong arena size: " + maxArenaBytes);
+        this.heap = new Arena<byte[]>(maxArenaBytes) {
+            @Override
+            byte[] allocate(int size) {
+                return new byte[size];
+            }
+
+            @Override
+            int capacity(byte[] buffer) {
+                return buffer.length;
+            }
+        };
+        this.direct = new Arena<ByteBuffer>(maxArenaBytes) {
+            @Override
+            ByteBuffer allocate(int size) {
+                return ByteBuffer.allocateDirect(size);
+            }
+
+            @Override
+            int capacity(ByteBuffer buffer) {
+                return buffer.capacity();
+            }
+        };
+    }
+
+    /**
+     * Pool shared by the utilities of this package.
+     *
+     * @return
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Take a heap buffer, its content is undefined.
+     *
+     * @param minSize
+     * @return an array of at least minSize bytes
+     */
+    public byte[] acquire(int minSize) {
+        return heap.acquire(minSize);
+    }
+
+    /**
+     * Give back a buffer of {@link #acquire(int)}.
+     *
+     * @param buffer
+     */
+    public void release(byte[] buffer) {
+        heap.release(buffer, true);
+    }
+
+    /**
+     * Give back a buffer of {@link #acquire(int)} to the shared arena, for a buffer the releasing thread
+     * won't need again soon, as the intermediate buffers of a growing read.
+     *
+     * @param buffer
+     */
+    public void releaseShared(byte[] buffer) {
+        heap.release(buffer, false);
+    }
+
+    /**
+     * Take a cleared big-endian direct buffer, its content is undefined.
+     *
+     * @param minSize
+     * @return a buffer of at least minSize bytes capacity
+     */
+    public ByteBuffer acquireDirect(int minSize) {
+        ByteBuffer buffer = direct.acquire(minSize);
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer of {@link #acquireDirect(int)}.
+     *
+     * @param buffer
+     */
+    public void releaseDirect(ByteBuffer buffer) {
+        AssertUtils.checkArgument(buffer.isDirect(), "Not a direct buffer");
+        direct.release(buffer, true);
+    }
+
+    /**
+     * @return number of requests served by a pooled buffer
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of requests which allocated a buffer
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return bytes of heap buffers acquired and not released yet
+     */
+    public long getOutstandingHeapBytes() {
+        return heap.outstanding.get();
+    }
+
+    /**
+     * @return bytes of direct buffers acquired and not released yet
+     */
+    public long getOutstandingDirectBytes() {
+        return direct.outstanding.get();
+    }
+
+    /**
+     * @return bytes held by the shared arena
+     */
+    public long getArenaBytes() {
+        return heap.arenaBytes.get() + direct.arenaBytes.get();
+    }
+
+    /**
+     * @return bytes held by the caches of the live threads
+     */
+    public long getThreadCachedBytes() {
+        return heap.cachedBytes() + direct.cachedBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{hits=" + getHits() + ", misses=" + getMisses()
+                + ", outstandingHeapBytes=" + getOutstandingHeapBytes()
+                + ", outstandingDirectBytes=" + getOutstandingDirectBytes()
+                + ", arenaBytes=" + getArenaBytes()
+                + ", threadCachedBytes=" + getThreadCachedBytes() + "}";
+    }
+
+    /**
+     * @return index of the smallest size class holding minSize bytes, -1 if larger than {@link #MAX_BUFFER_SIZE}
+     */
+    static int sizeClass(int minSize) {
+        if (minSize <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        if (minSize > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(minSize - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Buffers of one kind: per thread caches of the small size classes in front of a shared arena.
+     * The bytes of both count against the maximum, the bytes cached by a thread which has died
+     * are given back once its cache is garbage collected.
+     */
+    private abstract class Arena<T> {
+        private final long maxArenaBytes;
+        private final ConcurrentLinkedQueue<T>[] shared;
+        private final ThreadLocal<ThreadCache> caches = ThreadLocal.withInitial(this::newCache);
+        private final ReferenceQueue<Object> deadCaches = new ReferenceQueue<>();
+        /**
+         * Keeps the references of the caches reachable until they are enqueued.
+         */
+        private final Set<CacheRef> cacheRefs = ConcurrentHashMap.newKeySet();
+        /**
+         * Bytes of the arena and the thread caches.
+         */
+        private final AtomicLong idleBytes = new AtomicLong();
+        private final AtomicLong cachedBytes = new AtomicLong();
+        final AtomicLong arenaBytes = new AtomicLong();
+        final AtomicLong outstanding = new AtomicLong();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Arena(long maxArenaBytes) {
+            this.maxArenaBytes = maxArenaBytes;
+            this.shared = new ConcurrentLinkedQueue[SIZE_CLASSES];
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                shared[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        abstract T allocate(int size);
+
+        abstract int capacity(T buffer);
+
+        @SuppressWarnings("unchecked")
+        T acquire(int minSize) {
+            AssertUtils.checkArgument(minSize >= 0, "Wrong buffer size: " + minSize);
+            expungeDeadCaches();
+            int index = sizeClass(minSize);
+            if (index < 0) {
+                misses.increment();
+                outstanding.addAndGet(minSize);
+                return allocate(minSize);
+            }
+            int size = MIN_BUFFER_SIZE << index;
+            T buffer = null;
+            if (index < CACHED_SIZE_CLASSES) {
+                ThreadCache cache = caches.get();
+                Object[] buffers = cache.buffers[index];
+                for (int i = THREAD_CACHE_SIZE - 1; i >= 0; i--) {
+                    if (null != buffers[i]) {
+                        buffer = (T) buffers[i];
+                        buffers[i] = null;
+                        cache.add(-size);
+                        break;
+                    }
+                }
+            }
+            if (null == buffer) {
+                buffer = shared[index].poll();
+                if (null != buffer) {
+                    arenaBytes.addAndGet(-size);
+                    idleBytes.addAndGet(-size);
+                }
+            }
+            if (null == buffer) {
+                misses.increment();
+                buffer = allocate(size);
+            } else {
+                hits.increment();
+            }
+            outstanding.addAndGet(size);
+            return buffer;
+        }
+
+        /**
+         * @param threadCache whether the buffer may go to the cache of the calling thread
+         */
+        void release(T buffer, boolean threadCache) {
+            int size = capacity(buffer);
+            outstanding.addAndGet(-size);
+            int index = sizeClass(size);
+            if (index < 0 || MIN_BUFFER_SIZE << index != size) {
+                return;
+            }
+            if (idleBytes.addAndGet(size) > maxArenaBytes) {
+                idleBytes.addAndGet(-size);
+                return;
+            }
+            if (threadCache && index < CACHED_SIZE_CLASSES) {
+                ThreadCache cache = caches.get();
+                if (cache.ref.bytes + size <= THREAD_CACHE_BYTES) {
+                    Object[] buffers = cache.buffers[index];
+                    for (int i = 0; i < THREAD_CACHE_SIZE; i++) {
+                        if (null == buffers[i]) {
+                            buffers[i] = buffer;
+                            cache.add(size);
+                            return;
+                        }
+                    }
+                }
+            }
+            arenaBytes.addAndGet(size);
+            shared[index].offer(buffer);
+        }
+
+        long cachedBytes() {
+            expungeDeadCaches();
+            return cachedBytes.get();
+        }
+
+        private ThreadCache newCache() {
+            ThreadCache cache = new ThreadCache();
+            cache.ref = new CacheRef(cache, deadCaches);
+            cacheRefs.add(cache.ref);
+            return cache;
+        }
+
+        private void expungeDeadCaches() {
+            CacheRef ref;
+            while (null != (ref = (CacheRef) deadCaches.poll())) {
+                if (cacheRefs.remove(ref)) {
+                    cachedBytes.addAndGet(-ref.bytes);
+                    idleBytes.addAndGet(-ref.bytes);
+                }
+            }
+        }
+
+        /**
+         * Buffers cached by a thread, reachable from the thread only.
+         */
+        private final class ThreadCache {
+            final Object[][] buffers = new Object[CACHED_SIZE_CLASSES][THREAD_CACHE_SIZE];
+            CacheRef ref;
+
+            void add(int size) {
+                ref.bytes += size;
+                cachedBytes.addAndGet(size);
+                if (size < 0) {
+                    idleBytes.addAndGet(size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Outlives its thread cache to give back the bytes it held.
+     */
+    private static final class CacheRef extends WeakReference<Object> {
+        /**
+         * Written by the owner thread only.
+         */
+        volatile long bytes;
+
+        CacheRef(Object cache, ReferenceQueue<Object> queue) {
+            super(cache, queue);
+        }
+    }
+}
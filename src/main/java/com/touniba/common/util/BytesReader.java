@@ -0,0 +1,187 @@
+package com.touniba.common.util;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reader of the {@link BytesUtils} wire format as written by {@link BytesWriter}.
+ * <p>
+ * Values are read big-endian from the current position of a heap or direct buffer,
+ * {@link #reset(ByteBuffer)} points the same reader to the next record.
+ * Reading past the end throws {@link BufferUnderflowException}.
+ * <p>
+ * A reader is not thread safe.
+ */
+public class BytesReader {
+    private ByteBuffer buffer;
+
+    public BytesReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public BytesReader(byte[] bytes, int offset, int length) {
+        reset(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Read the remaining bytes of a buffer, the position of the buffer is not changed.
+     *
+     * @param buffer
+     */
+    public BytesReader(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Read the remaining bytes of another buffer.
+     *
+     * @param buffer
+     * @return
+     */
+    public BytesReader reset(ByteBuffer buffer) {
+        this.buffer = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer.duplicate() : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        return this;
+    }
+
+    public byte readByte() {
+        return buffer.get();
+    }
+
+    /**
+     * Reverses {@link BytesWriter#writeBoolean(boolean)}
+     *
+     * @return
+     */
+    public boolean readBoolean() {
+        return buffer.get() != (byte) 0;
+    }
+
+    public short readShort() {
+        return buffer.getShort();
+    }
+
+    public int readInt() {
+        return buffer.getInt();
+    }
+
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(buffer.getInt());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(buffer.getLong());
+    }
+
+    public int readVarInt() {
+        return BytesUtils.getVarInt(buffer);
+    }
+
+    public long readVarLong() {
+        return BytesUtils.getVarLong(buffer);
+    }
+
+    public int readSignedVarInt() {
+        return BytesUtils.getSignedVarInt(buffer);
+    }
+
+    public long readSignedVarLong() {
+        return BytesUtils.getSignedVarLong(buffer);
+    }
+
+    /**
+     * Read bytes into an array.
+     *
+     * @param dst
+     * @param offset
+     * @param length
+     */
+    public void readBytes(byte[] dst, int offset, int length) {
+        buffer.get(dst, offset, length);
+    }
+
+    public byte[] readBytes(int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reverses {@link BytesWriter#writeBigDecimal(BigDecimal)}
+     *
+     * @return the BigDecimal value, may be null
+     */
+    public BigDecimal readBigDecimal() {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        int position = buffer.position();
+        checkRemaining(length);
+        BigDecimal val = BytesUtils.toBigDecimal(buffer, position, length);
+        AssertUtils.checkArgument(null != val, "Wrong BigDecimal length: " + length);
+        buffer.position(position + length);
+        return val;
+    }
+
+    /**
+     * Reverses {@link BytesWriter#writeCompactBigDecimal(BigDecimal)}
+     *
+     * @return the BigDecimal value, may be null
+     */
+    public BigDecimal readCompactBigDecimal() {
+        return BytesUtils.getCompactBigDecimal(buffer);
+    }
+
+    /**
+     * Reverses {@link BytesWriter#writeString(String)}
+     *
+     * @return the String value, may be null
+     */
+    public String readString() {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        int position = buffer.position();
+        checkRemaining(length);
+        String val = BytesUtils.toString(buffer, position, length, BytesUtils.DEFAULT_CHARSET);
+        buffer.position(position + length);
+        return val;
+    }
+
+    /**
+     * Skip bytes.
+     *
+     * @param length
+     * @return
+     */
+    public BytesReader skip(int length) {
+        checkRemaining(length);
+        buffer.position(buffer.position() + length);
+        return this;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    private void checkRemaining(int length) {
+        if (length < 0 || buffer.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+    }
+}
@@ -3,7 +3,19 @@ package com.touniba.common.util;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Bytes utils. from hbase
@@ -29,6 +41,47 @@ public class BytesUtils {
 
     public static final Charset DEFAULT_CHARSET = Charset.forName(UTF8);
 
+    /**
+     * Unsigned lexicographic order of byte arrays, see {@link #compareTo(byte[], byte[])}.
+     */
+    public static final Comparator<byte[]> BYTES_COMPARATOR = BytesUtils::compareTo;
+
+    /**
+     * Whether {@link UnsafeBytesComparer} loaded, otherwise arrays are compared byte by byte.
+     */
+    static final boolean UNSAFE_COMPARER = isUnsafeComparerAvailable();
+
+    /**
+     * Maximum number of bytes of a varint long.
+     */
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    private static final long VARINT_STOP_BITS = 0x8080808080808080L;
+
+    /**
+     * Tags of the compact BigDecimal encoding.
+     */
+    private static final byte DECIMAL_LEGACY = 0;
+    private static final byte DECIMAL_COMPACT = 1;
+    private static final byte DECIMAL_NULL = 2;
+    private static final int MAX_LONG_PRECISION = 18;
+    /**
+     * Marks an unscaled value that doesn't fit a long, never a valid value of 18 digits.
+     */
+    static final long NOT_COMPACT = Long.MIN_VALUE;
+
+    /**
+     * Size of the header of a packed block: an int count, a byte bit width and a long reference value.
+     */
+    public static final int PACKED_HEADER_SIZE = SIZEOF_INT + SIZEOF_BYTE + SIZEOF_LONG;
+
+    private static final long ASCII_MASK = 0x8080808080808080L;
+    /**
+     * Largest scratch array of chars kept by a thread for decoding.
+     */
+    private static final int MAX_CACHED_CHARS = 1 << 16;
+    private static final ThreadLocal<Utf8Coder> UTF8_CODERS = ThreadLocal.withInitial(Utf8Coder::new);
+
     /**
      * Converts a string to a UTF-8 byte array.
      *
@@ -149,6 +202,13 @@ public class BytesUtils {
      * @return the byte array
      */
     public static byte[] toBytes(BigDecimal val) {
+        long unscaled = unscaledLong(val);
+        if (unscaled != NOT_COMPACT) {
+            int length = sizeOfTwosComplement(unscaled);
+            byte[] result = new byte[SIZEOF_INT + length];
+            putTwosComplement(result, putInt(result, 0, val.scale()), unscaled, length);
+            return result;
+        }
         byte[] valueBytes = val.unscaledValue().toByteArray();
         byte[] result = new byte[valueBytes.length + SIZEOF_INT];
         int offset = putInt(result, 0, val.scale());
@@ -178,6 +238,108 @@ public class BytesUtils {
 
     }
 
+    /**
+     * Decode UTF-8 bytes to a String, malformed input is replaced by U+FFFD as {@link String#String(byte[], Charset)} does.
+     * <p>
+     * ASCII bytes are checked a word of 8 bytes at a time and copied without a decoder,
+     * other bytes are decoded by a decoder of the calling thread.
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param length number of bytes
+     * @return
+     */
+    public static String toString(byte[] bytes, int offset, int length) {
+        checkRoom(bytes, offset, length);
+        int ascii = asciiPrefix(bytes, offset, length);
+        if (ascii == length) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        Utf8Coder coder = UTF8_CODERS.get();
+        // a UTF-8 byte never decodes to more than one char
+        char[] chars = coder.chars(length);
+        for (int i = 0; i < ascii; i++) {
+            chars[i] = (char) bytes[offset + i];
+        }
+        CharBuffer out = CharBuffer.wrap(chars, ascii, length - ascii);
+        coder.decode(ByteBuffer.wrap(bytes, offset + ascii, length - ascii), out);
+        return new String(chars, 0, out.position());
+    }
+
+    /**
+     * Number of bytes of the UTF-8 encoding of a string, an unpaired surrogate is encoded
+     * as '?' like {@link String#getBytes(Charset)} does.
+     *
+     * @param s
+     * @return
+     */
+    public static int sizeOfUtf8(String s) {
+        int length = s.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                size += 1;
+            } else if (!Character.isSurrogate(c)) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // a pair of chars to 4 bytes
+                size += 2;
+                i++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encode a string to UTF-8 at the specified byte array position, see {@link #sizeOfUtf8(String)}
+     * for the number of bytes.
+     * <p>
+     * ASCII chars are copied without an encoder, other chars are encoded by an encoder of the calling thread.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param s      string to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have enough room at the offset specified.
+     */
+    public static int putString(byte[] bytes, int offset, String s) {
+        checkRoom(bytes, offset, 0);
+        int length = s.length();
+        int limit = Math.min(length, bytes.length - offset);
+        int i = 0;
+        for (; i < limit; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[offset + i] = (byte) c;
+        }
+        if (i == length) {
+            return offset + length;
+        }
+        ByteBuffer out = ByteBuffer.wrap(bytes, offset + i, bytes.length - offset - i);
+        if (!UTF8_CODERS.get().encode(CharBuffer.wrap(s, i, length), out)) {
+            throw new IllegalArgumentException("Not enough room to put " + sizeOfUtf8(s) + " bytes at offset "
+                    + offset + " in a " + bytes.length + " byte array");
+        }
+        return out.position();
+    }
+
+    /**
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return whether all the bytes are ASCII
+     */
+    public static boolean isAscii(byte[] bytes, int offset, int length) {
+        checkRoom(bytes, offset, length);
+        return asciiPrefix(bytes, offset, length) == length;
+    }
+
     /**
      * Reverses {@link #toBytes(boolean)}
      *
@@ -395,6 +557,13 @@ public class BytesUtils {
         }
 
         int scale = toInt(bytes, offset);
+        if (length - SIZEOF_INT <= SIZEOF_LONG) {
+            long unscaled = bytes[offset + SIZEOF_INT];
+            for (int i = offset + SIZEOF_INT + 1; i < offset + length; i++) {
+                unscaled = (unscaled << 8) | (bytes[i] & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
         byte[] tcBytes = new byte[length - SIZEOF_INT];
         System.arraycopy(bytes, offset + SIZEOF_INT, tcBytes, 0, length - SIZEOF_INT);
         return new BigDecimal(new BigInteger(tcBytes), scale);
@@ -423,6 +592,29 @@ public class BytesUtils {
         return offset + SIZEOF_INT;
     }
 
+    /**
+     * Put a long value out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    long to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putLong(byte[] bytes, int offset, long val) {
+        if (bytes.length - offset < SIZEOF_LONG) {
+            throw new IllegalArgumentException("Not enough room to put a long at"
+                    + " offset " + offset + " in a " + bytes.length + " byte array");
+        }
+        for (int i = offset + 7; i > offset; i--) {
+            bytes[i] = (byte) val;
+            val >>>= 8;
+        }
+        bytes[offset] = (byte) val;
+        return offset + SIZEOF_LONG;
+    }
+
     /**
      * Put bytes at the specified byte array position.
      *
@@ -439,6 +631,2160 @@ public class BytesUtils {
         return tgtOffset + srcLength;
     }
 
+    /**
+     * Converts the bytes at an absolute offset of the buffer to a short value, big-endian
+     * regardless of the buffer order. Reverses {@link #putShort(ByteBuffer, int, short)}
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset offset into buffer
+     * @return the short value
+     */
+    public static short toShort(ByteBuffer buffer, int offset) {
+        checkRoom(buffer, offset, SIZEOF_SHORT);
+        short n = buffer.getShort(offset);
+        return isBigEndian(buffer) ? n : Short.reverseBytes(n);
+    }
+
+    /**
+     * Converts the bytes at an absolute offset of the buffer to an int value, big-endian
+     * regardless of the buffer order. Reverses {@link #putInt(ByteBuffer, int, int)}
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset offset into buffer
+     * @return the int value
+     */
+    public static int toInt(ByteBuffer buffer, int offset) {
+        checkRoom(buffer, offset, SIZEOF_INT);
+        int n = buffer.getInt(offset);
+        return isBigEndian(buffer) ? n : Integer.reverseBytes(n);
+    }
+
+    /**
+     * Converts the bytes at an absolute offset of the buffer to a long value, big-endian
+     * regardless of the buffer order. Reverses {@link #putLong(ByteBuffer, int, long)}
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset offset into buffer
+     * @return the long value
+     */
+    public static long toLong(ByteBuffer buffer, int offset) {
+        checkRoom(buffer, offset, SIZEOF_LONG);
+        long l = buffer.getLong(offset);
+        return isBigEndian(buffer) ? l : Long.reverseBytes(l);
+    }
+
+    /**
+     * Presumes float encoded as IEEE 754 floating-point "single format"
+     *
+     * @param buffer the buffer
+     * @param offset offset into buffer
+     * @return the float value
+     */
+    public static float toFloat(ByteBuffer buffer, int offset) {
+        return Float.intBitsToFloat(toInt(buffer, offset));
+    }
+
+    /**
+     * @param buffer the buffer
+     * @param offset offset where double is
+     * @return the double value
+     */
+    public static double toDouble(ByteBuffer buffer, int offset) {
+        return Double.longBitsToDouble(toLong(buffer, offset));
+    }
+
+    /**
+     * Converts the bytes at an absolute offset of the buffer to a BigDecimal value.
+     * Reverses {@link #putBigDecimal(ByteBuffer, int, BigDecimal)}
+     *
+     * @param buffer the buffer
+     * @param offset offset into buffer
+     * @param length length of the encoded value
+     * @return the BigDecimal value, null if the length or offset is wrong
+     */
+    public static BigDecimal toBigDecimal(ByteBuffer buffer, int offset, final int length) {
+        if (buffer == null || length < SIZEOF_INT + 1 || offset < 0 ||
+                (offset + length > buffer.limit())) {
+            return null;
+        }
+
+        int scale = toInt(buffer, offset);
+        if (length - SIZEOF_INT <= SIZEOF_LONG) {
+            long unscaled = buffer.get(offset + SIZEOF_INT);
+            for (int i = offset + SIZEOF_INT + 1; i < offset + length; i++) {
+                unscaled = (unscaled << 8) | (buffer.get(i) & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+        byte[] tcBytes = toBytes(buffer, offset + SIZEOF_INT, length - SIZEOF_INT);
+        return new BigDecimal(new BigInteger(tcBytes), scale);
+    }
+
+    /**
+     * Copy the bytes at an absolute offset of the buffer to a new byte array.
+     *
+     * @param buffer the buffer
+     * @param offset offset into buffer
+     * @param length number of bytes
+     * @return the byte array
+     */
+    public static byte[] toBytes(ByteBuffer buffer, int offset, int length) {
+        checkRoom(buffer, offset, length);
+        byte[] bytes = new byte[length];
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        dup.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decode the bytes at an absolute offset of the buffer to a String.
+     *
+     * @param buffer  the buffer
+     * @param offset  offset into buffer
+     * @param length  number of bytes
+     * @param charset
+     * @return
+     */
+    public static String toString(ByteBuffer buffer, int offset, int length, Charset charset) {
+        if (buffer.hasArray()) {
+            checkRoom(buffer, offset, length);
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+        }
+        if (!DEFAULT_CHARSET.equals(charset)) {
+            return new String(toBytes(buffer, offset, length), charset);
+        }
+        checkRoom(buffer, offset, length);
+        int ascii = 0;
+        // the mask doesn't depend on the buffer order
+        for (; ascii + SIZEOF_LONG <= length; ascii += SIZEOF_LONG) {
+            if ((buffer.getLong(offset + ascii) & ASCII_MASK) != 0) {
+                break;
+            }
+        }
+        for (; ascii < length && buffer.get(offset + ascii) >= 0; ascii++) {
+        }
+        Utf8Coder coder = UTF8_CODERS.get();
+        char[] chars = coder.chars(length);
+        for (int i = 0; i < ascii; i++) {
+            chars[i] = (char) buffer.get(offset + i);
+        }
+        if (ascii == length) {
+            return new String(chars, 0, length);
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.limit(offset + length).position(offset + ascii);
+        CharBuffer out = CharBuffer.wrap(chars, ascii, length - ascii);
+        coder.decode(in, out);
+        return new String(chars, 0, out.position());
+    }
+
+    /**
+     * Encode a string to UTF-8 at an absolute offset of the buffer, see {@link #sizeOfUtf8(String)}
+     * for the number of bytes.
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset position in the buffer
+     * @param s      string to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the buffer doesn't have enough room at the offset specified.
+     */
+    public static int putString(ByteBuffer buffer, int offset, String s) {
+        checkRoom(buffer, offset, 0);
+        int length = s.length();
+        int limit = Math.min(length, buffer.limit() - offset);
+        int i = 0;
+        for (; i < limit; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buffer.put(offset + i, (byte) c);
+        }
+        if (i == length) {
+            return offset + length;
+        }
+        ByteBuffer out = buffer.duplicate();
+        out.position(offset + i);
+        if (!UTF8_CODERS.get().encode(CharBuffer.wrap(s, i, length), out)) {
+            throw new IllegalArgumentException("Not enough room to put " + sizeOfUtf8(s) + " bytes at offset "
+                    + offset + " of the buffer, limit: " + buffer.limit());
+        }
+        return out.position();
+    }
+
+    /**
+     * Put a short value out to an absolute offset of the buffer, big-endian regardless of the buffer order.
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset position in the buffer
+     * @param val    short to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the buffer doesn't have enough room at the offset specified.
+     */
+    public static int putShort(ByteBuffer buffer, int offset, short val) {
+        checkRoom(buffer, offset, SIZEOF_SHORT);
+        buffer.putShort(offset, isBigEndian(buffer) ? val : Short.reverseBytes(val));
+        return offset + SIZEOF_SHORT;
+    }
+
+    /**
+     * Put an int value out to an absolute offset of the buffer, big-endian regardless of the buffer order.
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset position in the buffer
+     * @param val    int to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the buffer doesn't have enough room at the offset specified.
+     */
+    public static int putInt(ByteBuffer buffer, int offset, int val) {
+        checkRoom(buffer, offset, SIZEOF_INT);
+        buffer.putInt(offset, isBigEndian(buffer) ? val : Integer.reverseBytes(val));
+        return offset + SIZEOF_INT;
+    }
+
+    /**
+     * Put a long value out to an absolute offset of the buffer, big-endian regardless of the buffer order.
+     *
+     * @param buffer the buffer, heap, direct or mapped
+     * @param offset position in the buffer
+     * @param val    long to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the buffer doesn't have enough room at the offset specified.
+     */
+    public static int putLong(ByteBuffer buffer, int offset, long val) {
+        checkRoom(buffer, offset, SIZEOF_LONG);
+        buffer.putLong(offset, isBigEndian(buffer) ? val : Long.reverseBytes(val));
+        return offset + SIZEOF_LONG;
+    }
+
+    /**
+     * Put a float value out to an absolute offset of the buffer as the IEEE 754 "single format".
+     *
+     * @param buffer the buffer
+     * @param offset position in the buffer
+     * @param val    float to write out
+     * @return incremented offset
+     */
+    public static int putFloat(ByteBuffer buffer, int offset, float val) {
+        return putInt(buffer, offset, Float.floatToRawIntBits(val));
+    }
+
+    /**
+     * Put a double value out to an absolute offset of the buffer as the IEEE 754 double format.
+     *
+     * @param buffer the buffer
+     * @param offset position in the buffer
+     * @param val    double to write out
+     * @return incremented offset
+     */
+    public static int putDouble(ByteBuffer buffer, int offset, double val) {
+        return putLong(buffer, offset, Double.doubleToRawLongBits(val));
+    }
+
+    /**
+     * Put a BigDecimal value out to an absolute offset of the buffer in the layout of {@link #toBytes(BigDecimal)}.
+     *
+     * @param buffer the buffer
+     * @param offset position in the buffer
+     * @param val    BigDecimal to write out
+     * @return incremented offset
+     */
+    public static int putBigDecimal(ByteBuffer buffer, int offset, BigDecimal val) {
+        long unscaled = unscaledLong(val);
+        if (unscaled != NOT_COMPACT) {
+            int length = sizeOfTwosComplement(unscaled);
+            checkRoom(buffer, offset, SIZEOF_INT + length);
+            offset = putInt(buffer, offset, val.scale());
+            for (int i = length - 1; i >= 0; i--) {
+                buffer.put(offset++, (byte) (unscaled >> (i << 3)));
+            }
+            return offset;
+        }
+        byte[] valueBytes = val.unscaledValue().toByteArray();
+        checkRoom(buffer, offset, SIZEOF_INT + valueBytes.length);
+        offset = putInt(buffer, offset, val.scale());
+        return putBytes(buffer, offset, valueBytes, 0, valueBytes.length);
+    }
+
+    /**
+     * Put bytes at an absolute offset of the buffer.
+     *
+     * @param buffer    the buffer
+     * @param offset    position in the buffer
+     * @param srcBytes  array to write out
+     * @param srcOffset source offset
+     * @param srcLength source length
+     * @return incremented offset
+     */
+    public static int putBytes(ByteBuffer buffer, int offset, byte[] srcBytes, int srcOffset, int srcLength) {
+        checkRoom(buffer, offset, srcLength);
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        dup.put(srcBytes, srcOffset, srcLength);
+        return offset + srcLength;
+    }
+
+    private static void checkRoom(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || bytes.length - offset < length) {
+            throw new IllegalArgumentException("offset (" + offset + ") + length (" + length + ") exceed the"
+                    + " capacity of the array: " + bytes.length);
+        }
+    }
+
+    /**
+     * @return number of leading ASCII bytes
+     */
+    private static int asciiPrefix(byte[] bytes, int offset, int length) {
+        int i = asciiWords(bytes, offset, length);
+        for (; i < length && bytes[offset + i] >= 0; i++) {
+        }
+        return i;
+    }
+
+    /**
+     * @return number of bytes of the leading ASCII words
+     */
+    private static int asciiWords(byte[] bytes, int offset, int length) {
+        int i = 0;
+        for (; i + SIZEOF_LONG <= length; i += SIZEOF_LONG) {
+            if ((toLongLittleEndian(bytes, offset + i) & ASCII_MASK) != 0) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isBigEndian(ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    private static void checkRoom(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || buffer.limit() - offset < length) {
+            throw new IllegalArgumentException("offset (" + offset + ") + length (" + length + ") exceed the"
+                    + " limit of the buffer: " + buffer.limit());
+        }
+    }
+
+    /**
+     * Number of bytes of {@link #putCompactBigDecimal(byte[], int, BigDecimal)}.
+     *
+     * @param val value, may be null
+     * @return
+     */
+    public static int sizeOfCompact(BigDecimal val) {
+        if (null == val) {
+            return 1;
+        }
+        long unscaled = compactUnscaled(val);
+        if (unscaled != NOT_COMPACT) {
+            return 2 + sizeOfSignedVarLong(unscaled);
+        }
+        int length = SIZEOF_INT + (val.unscaledValue().bitLength() >> 3) + 1;
+        return 1 + sizeOfVarInt(length) + length;
+    }
+
+    /**
+     * Convert a BigDecimal value to the compact encoding, see {@link #putCompactBigDecimal(byte[], int, BigDecimal)}.
+     *
+     * @param val value, may be null
+     * @return the byte array
+     */
+    public static byte[] toCompactBytes(BigDecimal val) {
+        byte[] bytes = new byte[sizeOfCompact(val)];
+        putCompactBigDecimal(bytes, 0, val);
+        return bytes;
+    }
+
+    /**
+     * Put a BigDecimal value out to the specified byte array position in the compact encoding:
+     * a value whose unscaled value fits a long and scale fits a byte is a tag, the scale byte and the
+     * zigzag varint of the unscaled value, other values are a tag, the varint length and the
+     * {@link #toBytes(BigDecimal)} layout, null is a single tag.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    BigDecimal to write out, may be null
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putCompactBigDecimal(byte[] bytes, int offset, BigDecimal val) {
+        if (offset < 0 || bytes.length - offset < 1) {
+            throw new IllegalArgumentException("Not enough room to put a BigDecimal at"
+                    + " offset " + offset + " in a " + bytes.length + " byte array");
+        }
+        if (null == val) {
+            bytes[offset] = DECIMAL_NULL;
+            return offset + 1;
+        }
+        long unscaled = compactUnscaled(val);
+        if (unscaled != NOT_COMPACT) {
+            if (bytes.length - offset < 2 + sizeOfSignedVarLong(unscaled)) {
+                throw new IllegalArgumentException("Not enough room to put a BigDecimal at"
+                        + " offset " + offset + " in a " + bytes.length + " byte array");
+            }
+            bytes[offset] = DECIMAL_COMPACT;
+            bytes[offset + 1] = (byte) val.scale();
+            return putSignedVarLong(bytes, offset + 2, unscaled);
+        }
+        byte[] valueBytes = toBytes(val);
+        if (bytes.length - offset < 1 + sizeOfVarInt(valueBytes.length) + valueBytes.length) {
+            throw new IllegalArgumentException("Not enough room to put a BigDecimal at"
+                    + " offset " + offset + " in a " + bytes.length + " byte array");
+        }
+        bytes[offset] = DECIMAL_LEGACY;
+        offset = putVarInt(bytes, offset + 1, valueBytes.length);
+        return putBytes(bytes, offset, valueBytes, 0, valueBytes.length);
+    }
+
+    /**
+     * Reverses {@link #putCompactBigDecimal(byte[], int, BigDecimal)}, a compact value is made by
+     * {@link BigDecimal#valueOf(long, int)} without intermediate arrays.
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the BigDecimal value, may be null
+     * @throws IllegalArgumentException if the bytes are not a compact BigDecimal
+     */
+    public static BigDecimal toCompactBigDecimal(byte[] bytes, int offset) {
+        if (offset < 0 || bytes.length - offset < 1) {
+            throw explainWrongLengthOrOffset(bytes, offset, 1, 1);
+        }
+        switch (bytes[offset]) {
+            case DECIMAL_COMPACT:
+                if (bytes.length - offset < 3) {
+                    throw explainWrongLengthOrOffset(bytes, offset, 3, 3);
+                }
+                return BigDecimal.valueOf(toSignedVarLong(bytes, offset + 2), bytes[offset + 1]);
+            case DECIMAL_LEGACY:
+                int length = toVarInt(bytes, offset + 1);
+                BigDecimal val = toBigDecimal(bytes, offset + 1 + sizeOfVarInt(length), length);
+                if (null == val) {
+                    throw new IllegalArgumentException("Wrong BigDecimal length: " + length);
+                }
+                return val;
+            case DECIMAL_NULL:
+                return null;
+            default:
+                throw new IllegalArgumentException("Not a compact BigDecimal at offset " + offset + ": " + bytes[offset]);
+        }
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset offset of a compact BigDecimal
+     * @return the offset after it
+     */
+    public static int skipCompactBigDecimal(byte[] bytes, int offset) {
+        if (offset < 0 || bytes.length - offset < 1) {
+            throw explainWrongLengthOrOffset(bytes, offset, 1, 1);
+        }
+        switch (bytes[offset]) {
+            case DECIMAL_COMPACT:
+                return offset + 2 + sizeOfVarLong(toVarLong(bytes, offset + 2));
+            case DECIMAL_LEGACY:
+                int length = toVarInt(bytes, offset + 1);
+                return offset + 1 + sizeOfVarInt(length) + length;
+            case DECIMAL_NULL:
+                return offset + 1;
+            default:
+                throw new IllegalArgumentException("Not a compact BigDecimal at offset " + offset + ": " + bytes[offset]);
+        }
+    }
+
+    /**
+     * Put a BigDecimal value at the position of the buffer in the compact encoding, the position is incremented.
+     *
+     * @param buffer
+     * @param val    BigDecimal to write out, may be null
+     * @throws BufferOverflowException if the buffer doesn't have enough room
+     */
+    public static void putCompactBigDecimal(ByteBuffer buffer, BigDecimal val) {
+        if (null == val) {
+            buffer.put(DECIMAL_NULL);
+            return;
+        }
+        long unscaled = compactUnscaled(val);
+        if (unscaled != NOT_COMPACT) {
+            if (buffer.remaining() < 2 + sizeOfSignedVarLong(unscaled)) {
+                throw new BufferOverflowException();
+            }
+            buffer.put(DECIMAL_COMPACT);
+            buffer.put((byte) val.scale());
+            putSignedVarLong(buffer, unscaled);
+            return;
+        }
+        byte[] valueBytes = toBytes(val);
+        if (buffer.remaining() < 1 + sizeOfVarInt(valueBytes.length) + valueBytes.length) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(DECIMAL_LEGACY);
+        putVarInt(buffer, valueBytes.length);
+        buffer.put(valueBytes);
+    }
+
+    /**
+     * Read a compact BigDecimal at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @return the BigDecimal value, may be null
+     */
+    public static BigDecimal getCompactBigDecimal(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case DECIMAL_COMPACT:
+                int scale = buffer.get();
+                return BigDecimal.valueOf(getSignedVarLong(buffer), scale);
+            case DECIMAL_LEGACY:
+                int length = getVarInt(buffer);
+                if (buffer.remaining() < length) {
+                    throw new BufferUnderflowException();
+                }
+                int position = buffer.position();
+                BigDecimal val = toBigDecimal(buffer, position, length);
+                if (null == val) {
+                    throw new IllegalArgumentException("Wrong BigDecimal length: " + length);
+                }
+                buffer.position(position + length);
+                return val;
+            case DECIMAL_NULL:
+                return null;
+            default:
+                throw new IllegalArgumentException("Not a compact BigDecimal: " + tag);
+        }
+    }
+
+    /**
+     * @return the unscaled value if it fits a long, else {@link #NOT_COMPACT}
+     */
+    static long unscaledLong(BigDecimal val) {
+        // a precision of 18 digits always fits a long, scaleByPowerOfTen keeps the long representation
+        return val.precision() <= MAX_LONG_PRECISION ? val.scaleByPowerOfTen(val.scale()).longValue() : NOT_COMPACT;
+    }
+
+    /**
+     * @return the unscaled value if it fits a long and the scale fits a byte, else {@link #NOT_COMPACT}
+     */
+    private static long compactUnscaled(BigDecimal val) {
+        int scale = val.scale();
+        return scale == (byte) scale ? unscaledLong(val) : NOT_COMPACT;
+    }
+
+    /**
+     * Same as {@code BigInteger.valueOf(val).toByteArray().length}
+     */
+    static int sizeOfTwosComplement(long val) {
+        return ((Long.SIZE - Long.numberOfLeadingZeros(val ^ (val >> 63))) >> 3) + 1;
+    }
+
+    private static int putTwosComplement(byte[] bytes, int offset, long val, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            bytes[i] = (byte) val;
+            val >>= 8;
+        }
+        return offset + length;
+    }
+
+    /**
+     * Number of bytes of an unsigned varint (LEB128), {@link #putVarInt(byte[], int, int)}.
+     *
+     * @param val value, taken as unsigned
+     * @return 1 to 5
+     */
+    public static int sizeOfVarInt(int val) {
+        return sizeOfVarLong(val & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Number of bytes of an unsigned varint (LEB128), {@link #putVarLong(byte[], int, long)}.
+     *
+     * @param val value, taken as unsigned
+     * @return 1 to {@link #MAX_VARLONG_SIZE}
+     */
+    public static int sizeOfVarLong(long val) {
+        return (70 - Long.numberOfLeadingZeros(val | 1)) / 7;
+    }
+
+    /**
+     * Number of bytes of a zigzag signed varint, {@link #putSignedVarInt(byte[], int, int)}.
+     *
+     * @param val value
+     * @return 1 to 5
+     */
+    public static int sizeOfSignedVarInt(int val) {
+        return sizeOfVarInt(zigZagEncode(val));
+    }
+
+    /**
+     * Number of bytes of a zigzag signed varint, {@link #putSignedVarLong(byte[], int, long)}.
+     *
+     * @param val value
+     * @return 1 to {@link #MAX_VARLONG_SIZE}
+     */
+    public static int sizeOfSignedVarLong(long val) {
+        return sizeOfVarLong(zigZagEncode(val));
+    }
+
+    /**
+     * Map a signed value to an unsigned one so that small magnitudes stay small: 0, -1, 1, -2 become 0, 1, 2, 3.
+     *
+     * @param val
+     * @return
+     */
+    public static int zigZagEncode(int val) {
+        return (val << 1) ^ (val >> 31);
+    }
+
+    public static long zigZagEncode(long val) {
+        return (val << 1) ^ (val >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigZagEncode(int)}
+     *
+     * @param val
+     * @return
+     */
+    public static int zigZagDecode(int val) {
+        return (val >>> 1) ^ -(val & 1);
+    }
+
+    public static long zigZagDecode(long val) {
+        return (val >>> 1) ^ -(val & 1);
+    }
+
+    /**
+     * Put an int value, taken as unsigned, out to the specified byte array position as a varint (LEB128):
+     * 7 bits per byte, low bits first, the high bit of a byte is set when more bytes follow.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    int to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putVarInt(byte[] bytes, int offset, int val) {
+        return putVarLong(bytes, offset, val & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Put a long value, taken as unsigned, out to the specified byte array position as a varint (LEB128).
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    long to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putVarLong(byte[] bytes, int offset, long val) {
+        if (offset < 0 || bytes.length - offset < sizeOfVarLong(val)) {
+            throw new IllegalArgumentException("Not enough room to put a varint at"
+                    + " offset " + offset + " in a " + bytes.length + " byte array");
+        }
+        while ((val & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) (val | 0x80);
+            val >>>= 7;
+        }
+        bytes[offset++] = (byte) val;
+        return offset;
+    }
+
+    /**
+     * Put an int value out to the specified byte array position as a zigzag signed varint.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    int to write out
+     * @return incremented offset
+     */
+    public static int putSignedVarInt(byte[] bytes, int offset, int val) {
+        return putVarInt(bytes, offset, zigZagEncode(val));
+    }
+
+    /**
+     * Put a long value out to the specified byte array position as a zigzag signed varint.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    long to write out
+     * @return incremented offset
+     */
+    public static int putSignedVarLong(byte[] bytes, int offset, long val) {
+        return putVarLong(bytes, offset, zigZagEncode(val));
+    }
+
+    /**
+     * Converts a varint at the specified byte array position to an int value, the encoded size is
+     * {@link #sizeOfVarInt(int)} of the result. Reverses {@link #putVarInt(byte[], int, int)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the int value
+     * @throws IllegalArgumentException if the varint is truncated or doesn't fit an int
+     */
+    public static int toVarInt(byte[] bytes, int offset) {
+        return checkVarInt(toVarLong(bytes, offset));
+    }
+
+    /**
+     * Converts a varint at the specified byte array position to a long value, the encoded size is
+     * {@link #sizeOfVarLong(long)} of the result. Reverses {@link #putVarLong(byte[], int, long)}
+     * <p>
+     * When 8 bytes are available they are read as one word and up to 8 varint bytes are decoded at once.
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the long value
+     * @throws IllegalArgumentException if the varint is truncated or longer than {@link #MAX_VARLONG_SIZE}
+     */
+    public static long toVarLong(byte[] bytes, int offset) {
+        if (offset >= 0 && offset < bytes.length && bytes[offset] >= 0) {
+            return bytes[offset];
+        }
+        if (offset >= 0 && bytes.length - offset >= SIZEOF_LONG) {
+            long word = toLongLittleEndian(bytes, offset);
+            long stops = ~word & VARINT_STOP_BITS;
+            if (stops != 0) {
+                return varLongOfWord(word, (Long.numberOfTrailingZeros(stops) + 1) >>> 3);
+            }
+            return toVarLongTail(bytes, offset + SIZEOF_LONG, varLongOfWord(word, SIZEOF_LONG), 56);
+        }
+        return toVarLongTail(bytes, offset, 0, 0);
+    }
+
+    /**
+     * Converts a zigzag signed varint at the specified byte array position to an int value.
+     * Reverses {@link #putSignedVarInt(byte[], int, int)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the int value
+     */
+    public static int toSignedVarInt(byte[] bytes, int offset) {
+        return zigZagDecode(toVarInt(bytes, offset));
+    }
+
+    /**
+     * Converts a zigzag signed varint at the specified byte array position to a long value.
+     * Reverses {@link #putSignedVarLong(byte[], int, long)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the long value
+     */
+    public static long toSignedVarLong(byte[] bytes, int offset) {
+        return zigZagDecode(toVarLong(bytes, offset));
+    }
+
+    /**
+     * Put an int value, taken as unsigned, at the position of the buffer as a varint, the position is incremented.
+     *
+     * @param buffer
+     * @param val
+     * @throws BufferOverflowException if the buffer doesn't have enough room
+     */
+    public static void putVarInt(ByteBuffer buffer, int val) {
+        putVarLong(buffer, val & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Put a long value, taken as unsigned, at the position of the buffer as a varint, the position is incremented.
+     *
+     * @param buffer
+     * @param val
+     * @throws BufferOverflowException if the buffer doesn't have enough room
+     */
+    public static void putVarLong(ByteBuffer buffer, long val) {
+        if (buffer.remaining() < sizeOfVarLong(val)) {
+            throw new BufferOverflowException();
+        }
+        while ((val & ~0x7FL) != 0) {
+            buffer.put((byte) (val | 0x80));
+            val >>>= 7;
+        }
+        buffer.put((byte) val);
+    }
+
+    public static void putSignedVarInt(ByteBuffer buffer, int val) {
+        putVarInt(buffer, zigZagEncode(val));
+    }
+
+    public static void putSignedVarLong(ByteBuffer buffer, long val) {
+        putVarLong(buffer, zigZagEncode(val));
+    }
+
+    /**
+     * Read a varint at the position of the buffer as an int value, the position is incremented.
+     *
+     * @param buffer
+     * @return the int value
+     * @throws IllegalArgumentException if the varint doesn't fit an int
+     */
+    public static int getVarInt(ByteBuffer buffer) {
+        return checkVarInt(getVarLong(buffer));
+    }
+
+    /**
+     * Read a varint at the position of the buffer as a long value, the position is incremented.
+     * <p>
+     * When 8 bytes remain they are read as one word and up to 8 varint bytes are decoded at once.
+     *
+     * @param buffer
+     * @return the long value
+     * @throws BufferUnderflowException if the varint is truncated
+     * @throws IllegalArgumentException if the varint is longer than {@link #MAX_VARLONG_SIZE}
+     */
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        if (buffer.remaining() >= SIZEOF_LONG) {
+            int position = buffer.position();
+            long word = buffer.getLong(position);
+            if (isBigEndian(buffer)) {
+                word = Long.reverseBytes(word);
+            }
+            long stops = ~word & VARINT_STOP_BITS;
+            if (stops != 0) {
+                int size = (Long.numberOfTrailingZeros(stops) + 1) >>> 3;
+                buffer.position(position + size);
+                return varLongOfWord(word, size);
+            }
+            buffer.position(position + SIZEOF_LONG);
+            value = varLongOfWord(word, SIZEOF_LONG);
+            shift = 56;
+        }
+        for (; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint, longer than " + MAX_VARLONG_SIZE + " bytes");
+    }
+
+    public static int getSignedVarInt(ByteBuffer buffer) {
+        return zigZagDecode(getVarInt(buffer));
+    }
+
+    public static long getSignedVarLong(ByteBuffer buffer) {
+        return zigZagDecode(getVarLong(buffer));
+    }
+
+    private static long toVarLongTail(byte[] bytes, int offset, long value, int shift) {
+        for (; shift < Long.SIZE; shift += 7) {
+            if (offset < 0 || offset >= bytes.length) {
+                throw new IllegalArgumentException("Truncated varint at offset " + offset
+                        + " in a " + bytes.length + " byte array");
+            }
+            byte b = bytes[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint, longer than " + MAX_VARLONG_SIZE + " bytes");
+    }
+
+    /**
+     * Gather the 7 bit groups of the first size bytes of a little-endian word in three shift-and-mask steps.
+     */
+    private static long varLongOfWord(long word, int size) {
+        long x = size == SIZEOF_LONG ? word : word & ((1L << (size << 3)) - 1);
+        x &= 0x7F7F7F7F7F7F7F7FL;
+        x = ((x & 0x7F007F007F007F00L) >>> 1) | (x & 0x007F007F007F007FL);
+        x = ((x & 0x3FFF00003FFF0000L) >>> 2) | (x & 0x00003FFF00003FFFL);
+        return ((x & 0x0FFFFFFF00000000L) >>> 4) | (x & 0x000000000FFFFFFFL);
+    }
+
+    private static int checkVarInt(long val) {
+        if ((val >>> Integer.SIZE) != 0) {
+            throw new IllegalArgumentException("Varint doesn't fit an int: " + val);
+        }
+        return (int) val;
+    }
+
+    private static int putLongLittleEndian(byte[] bytes, int offset, long val) {
+        for (int i = 0; i < SIZEOF_LONG; i++) {
+            bytes[offset + i] = (byte) val;
+            val >>>= 8;
+        }
+        return offset + SIZEOF_LONG;
+    }
+
+    private static long toLongLittleEndian(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL)
+                | (bytes[offset + 1] & 0xFFL) << 8
+                | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24
+                | (bytes[offset + 4] & 0xFFL) << 32
+                | (bytes[offset + 5] & 0xFFL) << 40
+                | (bytes[offset + 6] & 0xFFL) << 48
+                | (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+    /**
+     * Convert a short array to a byte array of {@link #SIZEOF_SHORT} bytes per value.
+     *
+     * @param values
+     * @param order  byte order of every value
+     * @return the byte array
+     */
+    public static byte[] toBytes(short[] values, ByteOrder order) {
+        byte[] bytes = new byte[values.length * SIZEOF_SHORT];
+        putShorts(bytes, 0, values, 0, values.length, order);
+        return bytes;
+    }
+
+    /**
+     * Put short values out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putShorts(byte[] bytes, int offset, short[] values, int from, int count, ByteOrder order) {
+        int length = count * SIZEOF_SHORT;
+        view(bytes, offset, length, order).asShortBuffer().put(values, from, count);
+        return offset + length;
+    }
+
+    /**
+     * Put short values at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     */
+    public static void putShorts(ByteBuffer buffer, short[] values, int from, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asShortBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count * SIZEOF_SHORT);
+    }
+
+    /**
+     * Converts a byte array to short values. Reverses {@link #toBytes(short[], ByteOrder)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return the short values
+     */
+    public static short[] toShorts(byte[] bytes, int offset, int count, ByteOrder order) {
+        short[] values = new short[count];
+        getShorts(bytes, offset, values, 0, count, order);
+        return values;
+    }
+
+    /**
+     * Read short values from the specified byte array position.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if there's not enough bytes at the offset indicated.
+     */
+    public static int getShorts(byte[] bytes, int offset, short[] dst, int dstOffset, int count, ByteOrder order) {
+        int length = count * SIZEOF_SHORT;
+        view(bytes, offset, length, order).asShortBuffer().get(dst, dstOffset, count);
+        return offset + length;
+    }
+
+    /**
+     * Read short values from the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     */
+    public static void getShorts(ByteBuffer buffer, short[] dst, int dstOffset, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asShortBuffer().get(dst, dstOffset, count);
+        buffer.position(buffer.position() + count * SIZEOF_SHORT);
+    }
+
+    /**
+     * Convert a int array to a byte array of {@link #SIZEOF_INT} bytes per value.
+     *
+     * @param values
+     * @param order  byte order of every value
+     * @return the byte array
+     */
+    public static byte[] toBytes(int[] values, ByteOrder order) {
+        byte[] bytes = new byte[values.length * SIZEOF_INT];
+        putInts(bytes, 0, values, 0, values.length, order);
+        return bytes;
+    }
+
+    /**
+     * Put int values out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putInts(byte[] bytes, int offset, int[] values, int from, int count, ByteOrder order) {
+        int length = count * SIZEOF_INT;
+        view(bytes, offset, length, order).asIntBuffer().put(values, from, count);
+        return offset + length;
+    }
+
+    /**
+     * Put int values at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     */
+    public static void putInts(ByteBuffer buffer, int[] values, int from, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asIntBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count * SIZEOF_INT);
+    }
+
+    /**
+     * Converts a byte array to int values. Reverses {@link #toBytes(int[], ByteOrder)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return the int values
+     */
+    public static int[] toInts(byte[] bytes, int offset, int count, ByteOrder order) {
+        int[] values = new int[count];
+        getInts(bytes, offset, values, 0, count, order);
+        return values;
+    }
+
+    /**
+     * Read int values from the specified byte array position.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if there's not enough bytes at the offset indicated.
+     */
+    public static int getInts(byte[] bytes, int offset, int[] dst, int dstOffset, int count, ByteOrder order) {
+        int length = count * SIZEOF_INT;
+        view(bytes, offset, length, order).asIntBuffer().get(dst, dstOffset, count);
+        return offset + length;
+    }
+
+    /**
+     * Read int values from the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     */
+    public static void getInts(ByteBuffer buffer, int[] dst, int dstOffset, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asIntBuffer().get(dst, dstOffset, count);
+        buffer.position(buffer.position() + count * SIZEOF_INT);
+    }
+
+    /**
+     * Convert a long array to a byte array of {@link #SIZEOF_LONG} bytes per value.
+     *
+     * @param values
+     * @param order  byte order of every value
+     * @return the byte array
+     */
+    public static byte[] toBytes(long[] values, ByteOrder order) {
+        byte[] bytes = new byte[values.length * SIZEOF_LONG];
+        putLongs(bytes, 0, values, 0, values.length, order);
+        return bytes;
+    }
+
+    /**
+     * Put long values out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putLongs(byte[] bytes, int offset, long[] values, int from, int count, ByteOrder order) {
+        int length = count * SIZEOF_LONG;
+        view(bytes, offset, length, order).asLongBuffer().put(values, from, count);
+        return offset + length;
+    }
+
+    /**
+     * Put long values at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     */
+    public static void putLongs(ByteBuffer buffer, long[] values, int from, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asLongBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count * SIZEOF_LONG);
+    }
+
+    /**
+     * Converts a byte array to long values. Reverses {@link #toBytes(long[], ByteOrder)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return the long values
+     */
+    public static long[] toLongs(byte[] bytes, int offset, int count, ByteOrder order) {
+        long[] values = new long[count];
+        getLongs(bytes, offset, values, 0, count, order);
+        return values;
+    }
+
+    /**
+     * Read long values from the specified byte array position.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if there's not enough bytes at the offset indicated.
+     */
+    public static int getLongs(byte[] bytes, int offset, long[] dst, int dstOffset, int count, ByteOrder order) {
+        int length = count * SIZEOF_LONG;
+        view(bytes, offset, length, order).asLongBuffer().get(dst, dstOffset, count);
+        return offset + length;
+    }
+
+    /**
+     * Read long values from the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     */
+    public static void getLongs(ByteBuffer buffer, long[] dst, int dstOffset, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asLongBuffer().get(dst, dstOffset, count);
+        buffer.position(buffer.position() + count * SIZEOF_LONG);
+    }
+
+    /**
+     * Convert a float array to a byte array of {@link #SIZEOF_FLOAT} bytes per value.
+     *
+     * @param values
+     * @param order  byte order of every value
+     * @return the byte array
+     */
+    public static byte[] toBytes(float[] values, ByteOrder order) {
+        byte[] bytes = new byte[values.length * SIZEOF_FLOAT];
+        putFloats(bytes, 0, values, 0, values.length, order);
+        return bytes;
+    }
+
+    /**
+     * Put float values out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putFloats(byte[] bytes, int offset, float[] values, int from, int count, ByteOrder order) {
+        int length = count * SIZEOF_FLOAT;
+        view(bytes, offset, length, order).asFloatBuffer().put(values, from, count);
+        return offset + length;
+    }
+
+    /**
+     * Put float values at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     */
+    public static void putFloats(ByteBuffer buffer, float[] values, int from, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asFloatBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count * SIZEOF_FLOAT);
+    }
+
+    /**
+     * Converts a byte array to float values. Reverses {@link #toBytes(float[], ByteOrder)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return the float values
+     */
+    public static float[] toFloats(byte[] bytes, int offset, int count, ByteOrder order) {
+        float[] values = new float[count];
+        getFloats(bytes, offset, values, 0, count, order);
+        return values;
+    }
+
+    /**
+     * Read float values from the specified byte array position.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if there's not enough bytes at the offset indicated.
+     */
+    public static int getFloats(byte[] bytes, int offset, float[] dst, int dstOffset, int count, ByteOrder order) {
+        int length = count * SIZEOF_FLOAT;
+        view(bytes, offset, length, order).asFloatBuffer().get(dst, dstOffset, count);
+        return offset + length;
+    }
+
+    /**
+     * Read float values from the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     */
+    public static void getFloats(ByteBuffer buffer, float[] dst, int dstOffset, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asFloatBuffer().get(dst, dstOffset, count);
+        buffer.position(buffer.position() + count * SIZEOF_FLOAT);
+    }
+
+    /**
+     * Convert a double array to a byte array of {@link #SIZEOF_DOUBLE} bytes per value.
+     *
+     * @param values
+     * @param order  byte order of every value
+     * @return the byte array
+     */
+    public static byte[] toBytes(double[] values, ByteOrder order) {
+        byte[] bytes = new byte[values.length * SIZEOF_DOUBLE];
+        putDoubles(bytes, 0, values, 0, values.length, order);
+        return bytes;
+    }
+
+    /**
+     * Put double values out to the specified byte array position.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putDoubles(byte[] bytes, int offset, double[] values, int from, int count, ByteOrder order) {
+        int length = count * SIZEOF_DOUBLE;
+        view(bytes, offset, length, order).asDoubleBuffer().put(values, from, count);
+        return offset + length;
+    }
+
+    /**
+     * Put double values at the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @param order  byte order of every value
+     */
+    public static void putDoubles(ByteBuffer buffer, double[] values, int from, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asDoubleBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count * SIZEOF_DOUBLE);
+    }
+
+    /**
+     * Converts a byte array to double values. Reverses {@link #toBytes(double[], ByteOrder)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @param count  number of values
+     * @param order  byte order of every value
+     * @return the double values
+     */
+    public static double[] toDoubles(byte[] bytes, int offset, int count, ByteOrder order) {
+        double[] values = new double[count];
+        getDoubles(bytes, offset, values, 0, count, order);
+        return values;
+    }
+
+    /**
+     * Read double values from the specified byte array position.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     * @return incremented offset
+     * @throws IllegalArgumentException if there's not enough bytes at the offset indicated.
+     */
+    public static int getDoubles(byte[] bytes, int offset, double[] dst, int dstOffset, int count, ByteOrder order) {
+        int length = count * SIZEOF_DOUBLE;
+        view(bytes, offset, length, order).asDoubleBuffer().get(dst, dstOffset, count);
+        return offset + length;
+    }
+
+    /**
+     * Read double values from the position of the buffer, the position is incremented.
+     *
+     * @param buffer
+     * @param dst       array to read into
+     * @param dstOffset first value of dst
+     * @param count     number of values
+     * @param order     byte order of every value
+     */
+    public static void getDoubles(ByteBuffer buffer, double[] dst, int dstOffset, int count, ByteOrder order) {
+        buffer.duplicate().order(order).asDoubleBuffer().get(dst, dstOffset, count);
+        buffer.position(buffer.position() + count * SIZEOF_DOUBLE);
+    }
+
+    /**
+     * Number of bytes of {@link #putPacked(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @param from   first value
+     * @param count  number of values
+     * @return
+     */
+    public static int sizeOfPacked(long[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        long min = 0;
+        long max = 0;
+        if (count > 0) {
+            min = max = values[from];
+            for (int i = from + 1; i < from + count; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        return sizeOfPacked(count, bitWidth(max - min));
+    }
+
+    /**
+     * Number of bytes of {@link #putPacked(byte[], int, int[], int, int)}.
+     *
+     * @param values
+     * @param from   first value
+     * @param count  number of values
+     * @return
+     */
+    public static int sizeOfPacked(int[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        int min = 0;
+        int max = 0;
+        if (count > 0) {
+            min = max = values[from];
+            for (int i = from + 1; i < from + count; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        return sizeOfPacked(count, bitWidth((long) max - min));
+    }
+
+    /**
+     * Convert long values to a packed block, see {@link #putPacked(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @return the byte array
+     */
+    public static byte[] toPackedBytes(long[] values) {
+        byte[] bytes = new byte[sizeOfPacked(values, 0, values.length)];
+        putPacked(bytes, 0, values, 0, values.length);
+        return bytes;
+    }
+
+    /**
+     * Convert int values to a packed block, see {@link #putPacked(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @return the byte array
+     */
+    public static byte[] toPackedBytes(int[] values) {
+        byte[] bytes = new byte[sizeOfPacked(values, 0, values.length)];
+        putPacked(bytes, 0, values, 0, values.length);
+        return bytes;
+    }
+
+    /**
+     * Put long values out to the specified byte array position as a frame of reference block:
+     * every value is stored as its distance to the smallest value, in as many bits as the largest distance takes.
+     * <p>
+     * The block is a header of {@link #PACKED_HEADER_SIZE} bytes, the int count, the byte bit width and
+     * the long smallest value, big-endian, followed by the distances packed low bits first into
+     * little-endian words of 8 bytes. A value is read back without decoding the block,
+     * see {@link #getPacked(byte[], int, int)}.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putPacked(byte[] bytes, int offset, long[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        long reference = 0;
+        long max = 0;
+        if (count > 0) {
+            reference = max = values[from];
+            for (int i = from + 1; i < from + count; i++) {
+                reference = Math.min(reference, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        int width = bitWidth(max - reference);
+        checkPackedRoom(bytes, offset, sizeOfPacked(count, width));
+        offset = putPackedHeader(bytes, offset, count, width, reference);
+        if (width == 0) {
+            return offset;
+        }
+        long word = 0;
+        int shift = 0;
+        for (int i = from; i < from + count; i++) {
+            long distance = values[i] - reference;
+            word |= distance << shift;
+            shift += width;
+            if (shift >= Long.SIZE) {
+                offset = putLongLittleEndian(bytes, offset, word);
+                shift -= Long.SIZE;
+                // the high bits which didn't fit the word
+                word = shift == 0 ? 0 : distance >>> (width - shift);
+            }
+        }
+        return shift == 0 ? offset : putLongLittleEndian(bytes, offset, word);
+    }
+
+    /**
+     * Put int values out to the specified byte array position as a frame of reference block,
+     * see {@link #putPacked(byte[], int, long[], int, int)}.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putPacked(byte[] bytes, int offset, int[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        int reference = 0;
+        int max = 0;
+        if (count > 0) {
+            reference = max = values[from];
+            for (int i = from + 1; i < from + count; i++) {
+                reference = Math.min(reference, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        int width = bitWidth((long) max - reference);
+        checkPackedRoom(bytes, offset, sizeOfPacked(count, width));
+        offset = putPackedHeader(bytes, offset, count, width, reference);
+        if (width == 0) {
+            return offset;
+        }
+        long word = 0;
+        int shift = 0;
+        for (int i = from; i < from + count; i++) {
+            long distance = (long) values[i] - reference;
+            word |= distance << shift;
+            shift += width;
+            if (shift >= Long.SIZE) {
+                offset = putLongLittleEndian(bytes, offset, word);
+                shift -= Long.SIZE;
+                word = shift == 0 ? 0 : distance >>> (width - shift);
+            }
+        }
+        return shift == 0 ? offset : putLongLittleEndian(bytes, offset, word);
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @return number of values of the packed block
+     */
+    public static int packedCount(byte[] bytes, int offset) {
+        int count = toInt(bytes, offset);
+        if (count < 0) {
+            throw new IllegalArgumentException("Wrong packed count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @return the offset after the packed block
+     */
+    public static int skipPacked(byte[] bytes, int offset) {
+        return offset + sizeOfPacked(packedCount(bytes, offset), packedWidth(bytes, offset));
+    }
+
+    /**
+     * Read one value of a packed block, in constant time. Reverses {@link #putPacked(byte[], int, long[], int, int)}
+     *
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @param index  index of the value in the block
+     * @return the long value
+     * @throws IndexOutOfBoundsException if the index is not less than the count of the block
+     */
+    public static long getPacked(byte[] bytes, int offset, int index) {
+        int count = packedCount(bytes, offset);
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", count: " + count);
+        }
+        return packedValue(bytes, offset + PACKED_HEADER_SIZE, packedWidth(bytes, offset),
+                toLong(bytes, offset + SIZEOF_INT + SIZEOF_BYTE), index);
+    }
+
+    /**
+     * Binary search of a packed block of sorted values, as {@link Arrays#binarySearch(long[], long)} does.
+     *
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @param key    the value to search
+     * @return index of the key, if it is in the block; otherwise, (-(insertion point) - 1)
+     */
+    public static int searchPacked(byte[] bytes, int offset, long key) {
+        int count = packedCount(bytes, offset);
+        int width = packedWidth(bytes, offset);
+        long reference = toLong(bytes, offset + SIZEOF_INT + SIZEOF_BYTE);
+        int dataOffset = offset + PACKED_HEADER_SIZE;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long val = packedValue(bytes, dataOffset, width, reference, mid);
+            if (val < key) {
+                low = mid + 1;
+            } else if (val > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Read all the values of a packed block. Reverses {@link #putPacked(byte[], int, long[], int, int)}
+     *
+     * @param bytes     the byte array
+     * @param offset    position of a packed block
+     * @param dst       array to read into, with room for {@link #packedCount(byte[], int)} values
+     * @param dstOffset first value of dst
+     * @return the offset after the packed block
+     */
+    public static int getPacked(byte[] bytes, int offset, long[] dst, int dstOffset) {
+        int count = packedCount(bytes, offset);
+        int width = packedWidth(bytes, offset);
+        long reference = toLong(bytes, offset + SIZEOF_INT + SIZEOF_BYTE);
+        int end = checkPackedBlock(bytes, offset, count, width);
+        checkValues(dst.length, dstOffset, count);
+        if (width == 0) {
+            Arrays.fill(dst, dstOffset, dstOffset + count, reference);
+            return end;
+        }
+        long mask = -1L >>> (Long.SIZE - width);
+        ByteBuffer words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int position = offset + PACKED_HEADER_SIZE;
+        long word = words.getLong(position);
+        position += SIZEOF_LONG;
+        int shift = 0;
+        for (int i = dstOffset; i < dstOffset + count; i++) {
+            long distance = word >>> shift;
+            shift += width;
+            if (shift >= Long.SIZE) {
+                shift -= Long.SIZE;
+                if (position < end) {
+                    word = words.getLong(position);
+                    position += SIZEOF_LONG;
+                }
+                if (shift > 0) {
+                    distance |= word << (width - shift);
+                }
+            }
+            dst[i] = reference + (distance & mask);
+        }
+        return end;
+    }
+
+    /**
+     * Read all the values of a packed block of ints. Reverses {@link #putPacked(byte[], int, int[], int, int)}
+     *
+     * @param bytes     the byte array
+     * @param offset    position of a packed block
+     * @param dst       array to read into, with room for {@link #packedCount(byte[], int)} values
+     * @param dstOffset first value of dst
+     * @return the offset after the packed block
+     * @throws IllegalArgumentException if a value doesn't fit an int
+     */
+    public static int getPacked(byte[] bytes, int offset, int[] dst, int dstOffset) {
+        int count = packedCount(bytes, offset);
+        int width = packedWidth(bytes, offset);
+        long reference = toLong(bytes, offset + SIZEOF_INT + SIZEOF_BYTE);
+        int end = checkPackedBlock(bytes, offset, count, width);
+        checkValues(dst.length, dstOffset, count);
+        if (width == 0) {
+            Arrays.fill(dst, dstOffset, dstOffset + count, count == 0 ? 0 : checkInt(reference));
+            return end;
+        }
+        if (width > Integer.SIZE) {
+            throw new IllegalArgumentException("Packed values don't fit an int, bit width: " + width);
+        }
+        checkInt(reference);
+        long mask = -1L >>> (Long.SIZE - width);
+        ByteBuffer words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int position = offset + PACKED_HEADER_SIZE;
+        long word = words.getLong(position);
+        position += SIZEOF_LONG;
+        int shift = 0;
+        for (int i = dstOffset; i < dstOffset + count; i++) {
+            long distance = word >>> shift;
+            shift += width;
+            if (shift >= Long.SIZE) {
+                shift -= Long.SIZE;
+                if (position < end) {
+                    word = words.getLong(position);
+                    position += SIZEOF_LONG;
+                }
+                if (shift > 0) {
+                    distance |= word << (width - shift);
+                }
+            }
+            long val = reference + (distance & mask);
+            if ((int) val != val) {
+                throw new IllegalArgumentException("Packed value doesn't fit an int: " + val);
+            }
+            dst[i] = (int) val;
+        }
+        return end;
+    }
+
+    /**
+     * Reverses {@link #toPackedBytes(long[])}
+     *
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @return the long values
+     */
+    public static long[] toPackedLongs(byte[] bytes, int offset) {
+        long[] values = new long[packedCount(bytes, offset)];
+        getPacked(bytes, offset, values, 0);
+        return values;
+    }
+
+    /**
+     * Reverses {@link #toPackedBytes(int[])}
+     *
+     * @param bytes  the byte array
+     * @param offset position of a packed block
+     * @return the int values
+     */
+    public static int[] toPackedInts(byte[] bytes, int offset) {
+        int[] values = new int[packedCount(bytes, offset)];
+        getPacked(bytes, offset, values, 0);
+        return values;
+    }
+
+    /**
+     * Number of bytes of {@link #putDeltas(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @param from   first value
+     * @param count  number of values
+     * @return
+     */
+    public static int sizeOfDeltas(long[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        long size = sizeOfVarInt(count);
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            size += sizeOfSignedVarLong(values[i] - previous);
+            previous = values[i];
+        }
+        return checkBlockSize(size);
+    }
+
+    /**
+     * Number of bytes of {@link #putDeltas(byte[], int, int[], int, int)}.
+     *
+     * @param values
+     * @param from   first value
+     * @param count  number of values
+     * @return
+     */
+    public static int sizeOfDeltas(int[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        long size = sizeOfVarInt(count);
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            size += sizeOfSignedVarLong(values[i] - previous);
+            previous = values[i];
+        }
+        return checkBlockSize(size);
+    }
+
+    /**
+     * Convert long values to a delta block, see {@link #putDeltas(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @return the byte array
+     */
+    public static byte[] toDeltaBytes(long[] values) {
+        byte[] bytes = new byte[sizeOfDeltas(values, 0, values.length)];
+        putDeltas(bytes, 0, values, 0, values.length);
+        return bytes;
+    }
+
+    /**
+     * Convert int values to a delta block, see {@link #putDeltas(byte[], int, long[], int, int)}.
+     *
+     * @param values
+     * @return the byte array
+     */
+    public static byte[] toDeltaBytes(int[] values) {
+        byte[] bytes = new byte[sizeOfDeltas(values, 0, values.length)];
+        putDeltas(bytes, 0, values, 0, values.length);
+        return bytes;
+    }
+
+    /**
+     * Put long values out to the specified byte array position as a delta block: the varint count,
+     * then the difference of every value to the previous one (the first to 0) as a signed varint.
+     * Sorted values, ids or timestamps, take a byte or two each.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putDeltas(byte[] bytes, int offset, long[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        offset = putVarInt(bytes, offset, count);
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            offset = putSignedVarLong(bytes, offset, values[i] - previous);
+            previous = values[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Put int values out to the specified byte array position as a delta block,
+     * see {@link #putDeltas(byte[], int, long[], int, int)}.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param values values to write out
+     * @param from   first value
+     * @param count  number of values
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putDeltas(byte[] bytes, int offset, int[] values, int from, int count) {
+        checkValues(values.length, from, count);
+        offset = putVarInt(bytes, offset, count);
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            offset = putSignedVarLong(bytes, offset, values[i] - previous);
+            previous = values[i];
+        }
+        return offset;
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset position of a delta block
+     * @return number of values of the delta block
+     */
+    public static int deltaCount(byte[] bytes, int offset) {
+        int count = toVarInt(bytes, offset);
+        if (count < 0) {
+            throw new IllegalArgumentException("Wrong delta count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset position of a delta block
+     * @return the offset after the delta block
+     */
+    public static int skipDeltas(byte[] bytes, int offset) {
+        int count = deltaCount(bytes, offset);
+        offset += sizeOfVarInt(count);
+        for (int i = 0; i < count; i++) {
+            while (bytes[offset++] < 0) {
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Read all the values of a delta block. Reverses {@link #putDeltas(byte[], int, long[], int, int)}
+     *
+     * @param bytes     the byte array
+     * @param offset    position of a delta block
+     * @param dst       array to read into, with room for {@link #deltaCount(byte[], int)} values
+     * @param dstOffset first value of dst
+     * @return the offset after the delta block
+     */
+    public static int getDeltas(byte[] bytes, int offset, long[] dst, int dstOffset) {
+        int count = deltaCount(bytes, offset);
+        checkValues(dst.length, dstOffset, count);
+        offset += sizeOfVarInt(count);
+        long val = 0;
+        for (int i = dstOffset; i < dstOffset + count; i++) {
+            long delta = bytes[offset];
+            if (delta >= 0) {
+                offset++;
+            } else if (offset + 1 < bytes.length && bytes[offset + 1] >= 0) {
+                // most deltas of sorted values take one or two bytes
+                delta = (delta & 0x7F) | (long) bytes[offset + 1] << 7;
+                offset += 2;
+            } else {
+                delta = toVarLong(bytes, offset);
+                offset += sizeOfVarLong(delta);
+            }
+            val += zigZagDecode(delta);
+            dst[i] = val;
+        }
+        return offset;
+    }
+
+    /**
+     * Read all the values of a delta block of ints. Reverses {@link #putDeltas(byte[], int, int[], int, int)}
+     *
+     * @param bytes     the byte array
+     * @param offset    position of a delta block
+     * @param dst       array to read into, with room for {@link #deltaCount(byte[], int)} values
+     * @param dstOffset first value of dst
+     * @return the offset after the delta block
+     * @throws IllegalArgumentException if a value doesn't fit an int
+     */
+    public static int getDeltas(byte[] bytes, int offset, int[] dst, int dstOffset) {
+        int count = deltaCount(bytes, offset);
+        checkValues(dst.length, dstOffset, count);
+        offset += sizeOfVarInt(count);
+        long val = 0;
+        for (int i = dstOffset; i < dstOffset + count; i++) {
+            long delta = bytes[offset];
+            if (delta >= 0) {
+                offset++;
+            } else if (offset + 1 < bytes.length && bytes[offset + 1] >= 0) {
+                // most deltas of sorted values take one or two bytes
+                delta = (delta & 0x7F) | (long) bytes[offset + 1] << 7;
+                offset += 2;
+            } else {
+                delta = toVarLong(bytes, offset);
+                offset += sizeOfVarLong(delta);
+            }
+            val += zigZagDecode(delta);
+            if ((int) val != val) {
+                throw new IllegalArgumentException("Delta value doesn't fit an int: " + val);
+            }
+            dst[i] = (int) val;
+        }
+        return offset;
+    }
+
+    /**
+     * Reverses {@link #toDeltaBytes(long[])}
+     *
+     * @param bytes  the byte array
+     * @param offset position of a delta block
+     * @return the long values
+     */
+    public static long[] toDeltaLongs(byte[] bytes, int offset) {
+        long[] values = new long[deltaCount(bytes, offset)];
+        getDeltas(bytes, offset, values, 0);
+        return values;
+    }
+
+    /**
+     * Reverses {@link #toDeltaBytes(int[])}
+     *
+     * @param bytes  the byte array
+     * @param offset position of a delta block
+     * @return the int values
+     */
+    public static int[] toDeltaInts(byte[] bytes, int offset) {
+        int[] values = new int[deltaCount(bytes, offset)];
+        getDeltas(bytes, offset, values, 0);
+        return values;
+    }
+
+    /**
+     * @return number of bits of an unsigned distance
+     */
+    private static int bitWidth(long distance) {
+        return Long.SIZE - Long.numberOfLeadingZeros(distance);
+    }
+
+    private static int sizeOfPacked(int count, int width) {
+        return checkBlockSize(PACKED_HEADER_SIZE + (((long) count * width + Long.SIZE - 1) >>> 6) * SIZEOF_LONG);
+    }
+
+    private static int putPackedHeader(byte[] bytes, int offset, int count, int width, long reference) {
+        offset = putInt(bytes, offset, count);
+        bytes[offset++] = (byte) width;
+        return putLong(bytes, offset, reference);
+    }
+
+    private static int packedWidth(byte[] bytes, int offset) {
+        if (offset < 0 || bytes.length - offset < PACKED_HEADER_SIZE) {
+            throw new IllegalArgumentException("Not enough bytes for a packed header at offset " + offset
+                    + " in a " + bytes.length + " byte array");
+        }
+        int width = bytes[offset + SIZEOF_INT];
+        if (width < 0 || width > Long.SIZE) {
+            throw new IllegalArgumentException("Wrong packed bit width: " + width);
+        }
+        return width;
+    }
+
+    /**
+     * @return the value at index of the packed data at dataOffset
+     */
+    private static long packedValue(byte[] bytes, int dataOffset, int width, long reference, int index) {
+        if (width == 0) {
+            return reference;
+        }
+        long bit = (long) index * width;
+        int position = dataOffset + (int) (bit >>> 6) * SIZEOF_LONG;
+        int shift = (int) bit & (Long.SIZE - 1);
+        ByteBuffer words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long distance = words.getLong(position) >>> shift;
+        if (shift + width > Long.SIZE) {
+            distance |= words.getLong(position + SIZEOF_LONG) << (Long.SIZE - shift);
+        }
+        return reference + (distance & (-1L >>> (Long.SIZE - width)));
+    }
+
+    /**
+     * @return the offset after the packed block
+     */
+    private static int checkPackedBlock(byte[] bytes, int offset, int count, int width) {
+        int size = sizeOfPacked(count, width);
+        if (bytes.length - offset < size) {
+            throw new IllegalArgumentException("Packed block of " + size + " bytes exceeds the capacity of the"
+                    + " array at offset " + offset + ": " + bytes.length);
+        }
+        return offset + size;
+    }
+
+    private static void checkPackedRoom(byte[] bytes, int offset, int size) {
+        if (offset < 0 || bytes.length - offset < size) {
+            throw new IllegalArgumentException("Not enough room to put " + size + " bytes at offset "
+                    + offset + " in a " + bytes.length + " byte array");
+        }
+    }
+
+    private static void checkValues(int length, int from, int count) {
+        if (from < 0 || count < 0 || length - from < count) {
+            throw new IllegalArgumentException("from (" + from + ") + count (" + count + ") exceed the"
+                    + " length of the values: " + length);
+        }
+    }
+
+    private static int checkBlockSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Block too large: " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    private static int checkInt(long val) {
+        if ((int) val != val) {
+            throw new IllegalArgumentException("Packed value doesn't fit an int: " + val);
+        }
+        return (int) val;
+    }
+
+    private static ByteBuffer view(byte[] bytes, int offset, int length, ByteOrder order) {
+        if (offset < 0 || length < 0 || bytes.length - offset < length) {
+            throw new IllegalArgumentException("offset (" + offset + ") + length (" + length + ") exceed the"
+                    + " capacity of the array: " + bytes.length);
+        }
+        return ByteBuffer.wrap(bytes, offset, length).order(order);
+    }
+
+    /**
+     * Lexicographically compare two arrays as unsigned bytes.
+     *
+     * @param left  left operand
+     * @param right right operand
+     * @return 0 if equal, &lt; 0 if left is less than right, etc.
+     */
+    public static int compareTo(final byte[] left, final byte[] right) {
+        return compareTo(left, 0, left.length, right, 0, right.length);
+    }
+
+    /**
+     * Lexicographically compare two arrays as unsigned bytes, 8 bytes per step where
+     * {@code sun.misc.Unsafe} is available.
+     *
+     * @param buffer1 left operand
+     * @param offset1 Where to start comparing in the left buffer
+     * @param length1 How much to compare from the left buffer
+     * @param buffer2 right operand
+     * @param offset2 Where to start comparing in the right buffer
+     * @param length2 How much to compare from the right buffer
+     * @return 0 if equal, &lt; 0 if left is less than right, etc.
+     */
+    public static int compareTo(byte[] buffer1, int offset1, int length1,
+                                byte[] buffer2, int offset2, int length2) {
+        checkCompareRange(buffer1, offset1, length1);
+        checkCompareRange(buffer2, offset2, length2);
+        // Short circuit equal case
+        if (buffer1 == buffer2 &&
+                offset1 == offset2 &&
+                length1 == length2) {
+            return 0;
+        }
+        if (UNSAFE_COMPARER) {
+            return UnsafeBytesComparer.compareTo(buffer1, offset1, length1, buffer2, offset2, length2);
+        }
+        int end1 = offset1 + length1;
+        int end2 = offset2 + length2;
+        for (int i = offset1, j = offset2; i < end1 && j < end2; i++, j++) {
+            int a = (buffer1[i] & 0xff);
+            int b = (buffer2[j] & 0xff);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length1 - length2;
+    }
+
+    private static boolean isUnsafeComparerAvailable() {
+        try {
+            return UnsafeBytesComparer.available();
+        } catch (Throwable t) {
+            // no Unsafe or no unaligned access, keep the byte loop
+            return false;
+        }
+    }
+
+    private static void checkCompareRange(byte[] buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || buffer.length - offset < length) {
+            throw new ArrayIndexOutOfBoundsException("offset (" + offset + ") + length (" + length
+                    + ") exceed the capacity of the array: " + buffer.length);
+        }
+    }
+
+    /**
+     * UTF-8 encoder, decoder and scratch chars of a thread, malformed input is replaced.
+     */
+    private static final class Utf8Coder {
+        private final CharsetEncoder encoder = DEFAULT_CHARSET.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetDecoder decoder = DEFAULT_CHARSET.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private char[] chars = new char[256];
+
+        char[] chars(int length) {
+            if (length <= chars.length) {
+                return chars;
+            }
+            char[] bigger = new char[length];
+            if (length <= MAX_CACHED_CHARS) {
+                chars = bigger;
+            }
+            return bigger;
+        }
+
+        /**
+         * @return false if out doesn't have room for the whole input
+         */
+        boolean encode(CharBuffer in, ByteBuffer out) {
+            encoder.reset();
+            CoderResult result = encoder.encode(in, out, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(out);
+            }
+            return result.isUnderflow();
+        }
+
+        void decode(ByteBuffer in, CharBuffer out) {
+            decoder.reset();
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(out);
+            }
+            if (!result.isUnderflow()) {
+                // out has a char for every byte of the input
+                throw new IllegalStateException("Failed to decode string: " + result);
+            }
+        }
+    }
+
     private static IllegalArgumentException
     explainWrongLengthOrOffset(final byte[] bytes,
                                final int offset,
@@ -0,0 +1,269 @@
+package com.touniba.common.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Growable writer of the {@link BytesUtils} wire format, read it back with {@link BytesReader}.
+ * <p>
+ * Values are written big-endian at the current position of a heap or direct buffer which is reused
+ * after {@link #clear()}, so writing a record allocates nothing once the buffer has grown to the record size.
+ * Buffers are taken from {@link BufferPool#getDefault()} and given back by {@link #close()}.
+ * Strings take the {@link IOUtil#writeString(java.io.DataOutput, String)} layout, an int length
+ * (-1 for null) and UTF-8 bytes, a BigDecimal an int length (-1 for null) and {@link BytesUtils#toBytes(BigDecimal)}.
+ * <p>
+ * A writer is not thread safe.
+ */
+public class BytesWriter implements Closeable {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final boolean direct;
+    private ByteBuffer buffer;
+
+    public BytesWriter() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * @param initialCapacity
+     * @param direct          whether to write to a direct buffer
+     */
+    public BytesWriter(int initialCapacity, boolean direct) {
+        AssertUtils.checkArgument(initialCapacity >= 0, "Wrong capacity: " + initialCapacity);
+        this.direct = direct;
+        this.buffer = acquire(initialCapacity);
+    }
+
+    public BytesWriter writeByte(byte val) {
+        ensureRemaining(BytesUtils.SIZEOF_BYTE).put(val);
+        return this;
+    }
+
+    /**
+     * True is written as -1 and false as 0, see {@link BytesUtils#toBytes(boolean)}
+     *
+     * @param val
+     * @return
+     */
+    public BytesWriter writeBoolean(boolean val) {
+        return writeByte(val ? (byte) -1 : (byte) 0);
+    }
+
+    public BytesWriter writeShort(short val) {
+        ensureRemaining(BytesUtils.SIZEOF_SHORT).putShort(val);
+        return this;
+    }
+
+    public BytesWriter writeInt(int val) {
+        ensureRemaining(BytesUtils.SIZEOF_INT).putInt(val);
+        return this;
+    }
+
+    public BytesWriter writeLong(long val) {
+        ensureRemaining(BytesUtils.SIZEOF_LONG).putLong(val);
+        return this;
+    }
+
+    public BytesWriter writeFloat(float val) {
+        return writeInt(Float.floatToRawIntBits(val));
+    }
+
+    public BytesWriter writeDouble(double val) {
+        return writeLong(Double.doubleToRawLongBits(val));
+    }
+
+    /**
+     * Write an unsigned varint, see {@link BytesUtils#putVarInt(byte[], int, int)}
+     *
+     * @param val
+     * @return
+     */
+    public BytesWriter writeVarInt(int val) {
+        BytesUtils.putVarInt(ensureRemaining(BytesUtils.sizeOfVarInt(val)), val);
+        return this;
+    }
+
+    /**
+     * Write an unsigned varint, see {@link BytesUtils#putVarLong(byte[], int, long)}
+     *
+     * @param val
+     * @return
+     */
+    public BytesWriter writeVarLong(long val) {
+        BytesUtils.putVarLong(ensureRemaining(BytesUtils.sizeOfVarLong(val)), val);
+        return this;
+    }
+
+    public BytesWriter writeSignedVarInt(int val) {
+        return writeVarInt(BytesUtils.zigZagEncode(val));
+    }
+
+    public BytesWriter writeSignedVarLong(long val) {
+        return writeVarLong(BytesUtils.zigZagEncode(val));
+    }
+
+    /**
+     * Write bytes without a length.
+     *
+     * @param src
+     * @return
+     */
+    public BytesWriter writeBytes(byte[] src) {
+        return writeBytes(src, 0, src.length);
+    }
+
+    public BytesWriter writeBytes(byte[] src, int offset, int length) {
+        ensureRemaining(length).put(src, offset, length);
+        return this;
+    }
+
+    /**
+     * Write an int length, -1 for null, and the {@link BytesUtils#toBytes(BigDecimal)} layout.
+     *
+     * @param val
+     * @return
+     */
+    public BytesWriter writeBigDecimal(BigDecimal val) {
+        if (null == val) {
+            return writeInt(-1);
+        }
+        long unscaled = BytesUtils.unscaledLong(val);
+        if (unscaled != BytesUtils.NOT_COMPACT) {
+            int length = BytesUtils.sizeOfTwosComplement(unscaled);
+            ensureRemaining(2 * BytesUtils.SIZEOF_INT + length);
+            buffer.putInt(BytesUtils.SIZEOF_INT + length);
+            buffer.putInt(val.scale());
+            for (int i = length - 1; i >= 0; i--) {
+                buffer.put((byte) (unscaled >> (i << 3)));
+            }
+            return this;
+        }
+        byte[] valueBytes = val.unscaledValue().toByteArray();
+        ensureRemaining(2 * BytesUtils.SIZEOF_INT + valueBytes.length);
+        buffer.putInt(BytesUtils.SIZEOF_INT + valueBytes.length);
+        buffer.putInt(val.scale());
+        buffer.put(valueBytes);
+        return this;
+    }
+
+    /**
+     * Write a BigDecimal in the compact encoding of {@link BytesUtils#putCompactBigDecimal(byte[], int, BigDecimal)}.
+     *
+     * @param val may be null
+     * @return
+     */
+    public BytesWriter writeCompactBigDecimal(BigDecimal val) {
+        BytesUtils.putCompactBigDecimal(ensureRemaining(BytesUtils.sizeOfCompact(val)), val);
+        return this;
+    }
+
+    /**
+     * Write an int length, -1 for null, and the UTF-8 bytes.
+     *
+     * @param val
+     * @return
+     */
+    public BytesWriter writeString(String val) {
+        if (null == val) {
+            return writeInt(-1);
+        }
+        int length = BytesUtils.sizeOfUtf8(val);
+        ensureRemaining(BytesUtils.SIZEOF_INT + length).putInt(length);
+        buffer.position(BytesUtils.putString(buffer, buffer.position(), val));
+        return this;
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Discard the written bytes and keep the buffer for reuse.
+     *
+     * @return
+     */
+    public BytesWriter clear() {
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * @return a copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.position()];
+        ByteBuffer dup = buffer.duplicate();
+        dup.flip();
+        dup.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * View of the written bytes, valid until the next write or {@link #clear()}.
+     *
+     * @return
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer dup = buffer.duplicate();
+        dup.flip();
+        return dup;
+    }
+
+    /**
+     * Write the written bytes to a stream.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } else {
+            out.write(toByteArray());
+        }
+    }
+
+    /**
+     * Give the buffer back to {@link BufferPool#getDefault()}, the writer and the views of
+     * {@link #getBuffer()} must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (null != buffer) {
+            release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer ensureRemaining(int length) {
+        AssertUtils.check(null != buffer, "Writer is closed");
+        if (buffer.remaining() < length) {
+            ByteBuffer bigger = acquire(Math.max(buffer.capacity() << 1, buffer.position() + length));
+            buffer.flip();
+            bigger.put(buffer);
+            release(buffer);
+            buffer = bigger;
+        }
+        return buffer;
+    }
+
+    private ByteBuffer acquire(int capacity) {
+        BufferPool pool = BufferPool.getDefault();
+        return direct ? pool.acquireDirect(capacity) : ByteBuffer.wrap(pool.acquire(capacity));
+    }
+
+    private void release(ByteBuffer buffer) {
+        BufferPool pool = BufferPool.getDefault();
+        if (direct) {
+            pool.releaseDirect(buffer);
+        } else {
+            pool.release(buffer.array());
+        }
+    }
+}
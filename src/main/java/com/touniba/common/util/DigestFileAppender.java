@@ -0,0 +1,208 @@
+package com.touniba.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.touniba.common.util.MD5HashUtils.MD5Hash;
+
+/**
+ * Append to a file and keep the MD5 of its whole content up to date.
+ * <p>
+ * The running digest state is saved after every append to a sidecar checkpoint
+ * (the file name plus {@link #CHECKPOINT_SUFFIX}), so the signature is available without re-reading
+ * the file, also after a restart. The checkpoint is a record of at most 96 bytes with a CRC32, rewritten
+ * in place through a channel kept open on the sidecar. When the checkpoint is missing, torn or does not
+ * match the file, only the part of file behind the checkpoint is hashed again.
+ * <p>
+ * When writing to the file fails, the file may hold bytes the digest has not seen, so the appender
+ * rejects further appends; open the file again to rebuild the digest from its content. The file must only
+ * be appended through this class, other changes are not detected. Not thread safe.
+ */
+public class DigestFileAppender implements Closeable {
+    public static final String CHECKPOINT_SUFFIX = ".md5state";
+    private static final int CHECKPOINT_MAGIC = 0x4D443543;
+    private static final int CHECKPOINT_VERSION = 2;
+
+    private final File file;
+    private final MD5Digester digester;
+    private final FileOutputStream output;
+    private final FileChannel checkpoint;
+    private final ByteArrayOutputStream checkpointBytes = new ByteArrayOutputStream(128);
+    private final CRC32 crc = new CRC32();
+    private boolean failed;
+
+    private DigestFileAppender(File file, MD5Digester digester) throws IOException {
+        this.file = file;
+        this.digester = digester;
+        this.output = new FileOutputStream(file, true);
+        try {
+            this.checkpoint = FileChannel.open(new File(file.getPath() + CHECKPOINT_SUFFIX).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a file for appending, the file is created if it does not exist.
+     *
+     * @param fileName
+     * @return
+     * @throws IOException
+     */
+    public static DigestFileAppender open(String fileName) throws IOException {
+        FileUtils.createFile(fileName);
+        File file = new File(fileName);
+        File checkpoint = new File(fileName + CHECKPOINT_SUFFIX);
+        long length = file.length();
+        MD5Digester digester = readCheckpoint(checkpoint);
+        if (null == digester || digester.getCount() > length) {
+            digester = new MD5Digester();
+        }
+        if (digester.getCount() < length) {
+            catchUp(file, digester);
+        }
+        DigestFileAppender appender = new DigestFileAppender(file, digester);
+        try {
+            appender.writeCheckpoint();
+        } catch (IOException e) {
+            appender.close();
+            throw e;
+        }
+        return appender;
+    }
+
+    private static MD5Digester readCheckpoint(File checkpoint) {
+        if (!checkpoint.isFile()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(checkpoint.toPath());
+            ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(buffer);
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readByte() != CHECKPOINT_VERSION) {
+                return null;
+            }
+            MD5Digester digester = MD5Digester.readState(in);
+            // the record is rewritten in place, a torn write fails the CRC
+            int length = bytes.length - buffer.available();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            return in.readInt() == (int) crc.getValue() ? digester : null;
+        } catch (IOException e) {
+            // a broken checkpoint is rebuilt from the file
+            return null;
+        }
+    }
+
+    private static void catchUp(File file, MD5Digester digester) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            long skip = digester.getCount();
+            while (skip > 0) {
+                long skipped = in.skip(skip);
+                if (skipped <= 0) {
+                    throw new IOException("Cannot skip to " + digester.getCount() + " in " + file.getAbsolutePath());
+                }
+                skip -= skipped;
+            }
+            BufferPool pool = BufferPool.getDefault();
+            byte[] buffer = pool.acquire(8192);
+            try {
+                int size;
+                while ((size = in.read(buffer)) != -1) {
+                    digester.update(buffer, 0, size);
+                }
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    public void append(byte[] content) throws IOException {
+        if (null == content) {
+            throw new IOException("Content must not be null");
+        }
+        append(content, 0, content.length);
+    }
+
+    public void append(byte[] content, int offset, int length) throws IOException {
+        if (failed) {
+            throw new IOException("A previous append failed, open " + file.getAbsolutePath() + " again");
+        }
+        try {
+            output.write(content, offset, length);
+        } catch (IOException e) {
+            // part of the content may be in the file already
+            failed = true;
+            throw e;
+        }
+        digester.update(content, offset, length);
+        writeCheckpoint();
+    }
+
+    /**
+     * Get the MD5 of the whole file.
+     *
+     * @return
+     */
+    public MD5Hash getHash() {
+        return digester.digest();
+    }
+
+    public long getLength() {
+        return digester.getCount();
+    }
+
+    /**
+     * Get the signature with length of the whole file, the same as {@link MD5HashUtils#makeSignatureWithLength(java.nio.file.Path)}.
+     *
+     * @return
+     */
+    public String getSignatureWithLength() {
+        return MD5HashUtils.makeSignature(digester.digest(), digester.getCount());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        checkpointBytes.reset();
+        DataOutputStream out = new DataOutputStream(checkpointBytes);
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeByte(CHECKPOINT_VERSION);
+        digester.writeState(out);
+        crc.reset();
+        crc.update(checkpointBytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        // bytes left behind a shorter record are ignored by readCheckpoint
+        ByteBuffer record = ByteBuffer.wrap(checkpointBytes.toByteArray());
+        long position = 0;
+        while (record.hasRemaining()) {
+            position += checkpoint.write(record, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            output.close();
+        } finally {
+            checkpoint.close();
+        }
+    }
+}
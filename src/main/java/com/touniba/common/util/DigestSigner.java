@@ -0,0 +1,219 @@
+package com.touniba.common.util;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Registry of digest and HMAC signers.
+ * <p>
+ * Signers registered by name ({@link #get(String)}) are kept apart from the digest signers looked up by
+ * algorithm ({@link #lookup(String)}), so a name never shadows the algorithm of the same name.
+ * <p>
+ * A signer validates its algorithm (and key) when it is registered, then every thread keeps its own
+ * {@link MessageDigest} or {@link Mac}, so signing does no provider lookup and takes no lock.
+ */
+public class DigestSigner {
+    public static final String MD5 = "MD5";
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+    public static final String SHA512 = "SHA-512";
+    public static final String HMAC_SHA256 = "HmacSHA256";
+    public static final String HMAC_SHA512 = "HmacSHA512";
+
+    /**
+     * An unsupported algorithm is remembered by {@link #lookup(String)} while fewer algorithms are.
+     */
+    private static final int MAX_DIGESTS = 64;
+
+    private static final ConcurrentMap<String, DigestSigner> REGISTRY = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, DigestSigner> DIGESTS = new ConcurrentHashMap<>();
+    /**
+     * Marks an unsupported algorithm in DIGESTS.
+     */
+    private static final DigestSigner UNSUPPORTED = new DigestSigner(null, null, null, null);
+
+    static {
+        for (String algorithm : new String[]{MD5, SHA1, SHA256, SHA512}) {
+            DIGESTS.put(algorithm, digestSigner(algorithm, algorithm));
+        }
+    }
+
+    private final String name;
+    private final String algorithm;
+    private final ThreadLocal<MessageDigest> digests;
+    private final ThreadLocal<Mac> macs;
+
+    private DigestSigner(String name, String algorithm, ThreadLocal<MessageDigest> digests, ThreadLocal<Mac> macs) {
+        this.name = name;
+        this.algorithm = algorithm;
+        this.digests = digests;
+        this.macs = macs;
+    }
+
+    /**
+     * Register a digest signer, replaces the signer registered with the same name.
+     *
+     * @param name
+     * @param algorithm digest algorithm, like MD5, SHA-1, SHA-256, SHA-512
+     * @return the signer
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public static DigestSigner register(String name, String algorithm) {
+        DigestSigner signer = digestSigner(name, algorithm);
+        REGISTRY.put(name, signer);
+        return signer;
+    }
+
+    /**
+     * Register a HMAC signer, replaces the signer registered with the same name.
+     *
+     * @param name
+     * @param algorithm HMAC algorithm, like HmacSHA256, HmacSHA512
+     * @param key       secret key, it is copied
+     * @return the signer
+     * @throws IllegalArgumentException if the algorithm is not supported or the key is rejected
+     */
+    public static DigestSigner registerHmac(String name, String algorithm, byte[] key) {
+        AssertUtils.notNullArgument(name, "name");
+        AssertUtils.notNullArgument(key, "key");
+        SecretKeySpec keySpec = new SecretKeySpec(key.clone(), algorithm);
+        Mac mac = newMac(algorithm, keySpec);
+        ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> newMac(algorithm, keySpec));
+        macs.set(mac);
+        DigestSigner signer = new DigestSigner(name, algorithm, null, macs);
+        REGISTRY.put(name, signer);
+        return signer;
+    }
+
+    /**
+     * Get a registered signer, or the digest signer of the algorithm named so when none is registered.
+     *
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if no signer is registered with the name
+     */
+    public static DigestSigner get(String name) {
+        DigestSigner signer = REGISTRY.get(name);
+        if (null == signer) {
+            signer = lookup(name);
+        }
+        if (null == signer) {
+            throw new IllegalArgumentException("No signer registered: " + name);
+        }
+        return signer;
+    }
+
+    /**
+     * Get the digest signer of algorithm, creates it on first use. Signers registered by name are not looked up.
+     *
+     * @param algorithm
+     * @return the signer, or null if the algorithm is not supported
+     */
+    public static DigestSigner lookup(String algorithm) {
+        if (null == algorithm) {
+            return null;
+        }
+        DigestSigner signer = DIGESTS.get(algorithm);
+        if (null == signer) {
+            try {
+                signer = digestSigner(algorithm, algorithm);
+            } catch (IllegalArgumentException e) {
+                signer = UNSUPPORTED;
+            }
+            // the unsupported algorithms come from the callers, don't let them grow the map without bound
+            if (signer != UNSUPPORTED || DIGESTS.size() < MAX_DIGESTS) {
+                DigestSigner existing = DIGESTS.putIfAbsent(algorithm, signer);
+                signer = null == existing ? signer : existing;
+            }
+        }
+        return signer == UNSUPPORTED ? null : signer;
+    }
+
+    private static DigestSigner digestSigner(String name, String algorithm) {
+        AssertUtils.notNullArgument(name, "name");
+        MessageDigest digest = newDigest(algorithm);
+        ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> newDigest(algorithm));
+        digests.set(digest);
+        return new DigestSigner(name, algorithm, digests, null);
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        AssertUtils.notNullArgument(algorithm, "algorithm");
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, e);
+        }
+    }
+
+    private static Mac newMac(String algorithm, SecretKeySpec keySpec) {
+        AssertUtils.notNullArgument(algorithm, "algorithm");
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(keySpec);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Unsupported HMAC algorithm or key: " + algorithm, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean isHmac() {
+        return null != macs;
+    }
+
+    /**
+     * Sign data.
+     *
+     * @param data
+     * @return
+     */
+    public byte[] sign(byte[] data) {
+        return sign(data, 0, data.length);
+    }
+
+    /**
+     * Sign a range of data.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public byte[] sign(byte[] data, int offset, int length) {
+        if (null != macs) {
+            Mac mac = macs.get();
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        }
+        MessageDigest digest = digests.get();
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    /**
+     * Sign a string and return the signature as a hex string.
+     *
+     * @param data
+     * @param charset
+     * @param lowerCase
+     * @return
+     */
+    public String signHex(String data, Charset charset, boolean lowerCase) {
+        return HexUtils.encodeHex(sign(data.getBytes(charset)), lowerCase);
+    }
+}
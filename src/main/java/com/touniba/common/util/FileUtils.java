@@ -101,6 +101,7 @@ public class FileUtils {
      * @param fileName
      * @param content
      * @throws IOException
+     * @see DigestFileAppender to keep the signature of file up to date while appending
      */
     public static void appendFile(String fileName, byte[] content) throws IOException {
         if (null == content) {
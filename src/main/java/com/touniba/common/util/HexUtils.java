@@ -0,0 +1,269 @@
+package com.touniba.common.util;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Table driven hex encoder/decoder, writes into caller provided destinations without intermediate objects.
+ */
+public class HexUtils {
+    /**
+     * Arrays larger than this are encoded in parallel by {@link #encodeBulk(byte[], boolean)}.
+     */
+    public static final int BULK_PARALLEL_THRESHOLD = 1 << 20;
+    private static final int BULK_SEGMENT_SIZE = 1 << 16;
+
+    private static final char[] DIGITS_LOWER = "0123456789abcdef".toCharArray();
+    private static final char[] DIGITS_UPPER = "0123456789ABCDEF".toCharArray();
+    /**
+     * Two characters for every byte value, byte b maps to PAIRS[2 * b] and PAIRS[2 * b + 1].
+     */
+    private static final char[] PAIRS_LOWER = pairs(DIGITS_LOWER);
+    private static final char[] PAIRS_UPPER = pairs(DIGITS_UPPER);
+    /**
+     * Nibble of every ASCII character, -1 if it is not a hex character.
+     */
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        for (int i = 0; i < NIBBLES.length; i++) {
+            NIBBLES[i] = -1;
+        }
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[DIGITS_LOWER[i]] = (byte) i;
+            NIBBLES[DIGITS_UPPER[i]] = (byte) i;
+        }
+    }
+
+    private static char[] pairs(char[] digits) {
+        char[] pairs = new char[512];
+        for (int b = 0; b < 256; b++) {
+            pairs[b << 1] = digits[b >>> 4];
+            pairs[(b << 1) + 1] = digits[b & 0xF];
+        }
+        return pairs;
+    }
+
+    /**
+     * Encode bytes to a hex string.
+     *
+     * @param data
+     * @param lowerCase
+     * @return
+     */
+    public static String encodeHex(byte[] data, boolean lowerCase) {
+        return encodeHex(data, 0, data.length, lowerCase);
+    }
+
+    /**
+     * Encode a range of bytes to a hex string.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @param lowerCase
+     * @return
+     */
+    public static String encodeHex(byte[] data, int offset, int length, boolean lowerCase) {
+        char[] chars = new char[length << 1];
+        encode(data, offset, length, chars, 0, lowerCase);
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes to hex characters.
+     *
+     * @param src
+     * @param srcOffset
+     * @param length    number of bytes to encode
+     * @param dst
+     * @param dstOffset
+     * @param lowerCase
+     * @return incremented destination offset
+     */
+    public static int encode(byte[] src, int srcOffset, int length, char[] dst, int dstOffset, boolean lowerCase) {
+        checkRange(src.length, srcOffset, length);
+        checkRange(dst.length, dstOffset, length << 1);
+        char[] pairs = lowerCase ? PAIRS_LOWER : PAIRS_UPPER;
+        int j = dstOffset;
+        for (int i = srcOffset, end = srcOffset + length; i < end; i++) {
+            int p = (src[i] & 0xFF) << 1;
+            dst[j++] = pairs[p];
+            dst[j++] = pairs[p + 1];
+        }
+        return j;
+    }
+
+    /**
+     * Encode bytes to hex characters in ASCII.
+     *
+     * @param src
+     * @param srcOffset
+     * @param length    number of bytes to encode
+     * @param dst
+     * @param dstOffset
+     * @param lowerCase
+     * @return incremented destination offset
+     */
+    public static int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, boolean lowerCase) {
+        checkRange(src.length, srcOffset, length);
+        checkRange(dst.length, dstOffset, length << 1);
+        char[] pairs = lowerCase ? PAIRS_LOWER : PAIRS_UPPER;
+        int j = dstOffset;
+        for (int i = srcOffset, end = srcOffset + length; i < end; i++) {
+            int p = (src[i] & 0xFF) << 1;
+            dst[j++] = (byte) pairs[p];
+            dst[j++] = (byte) pairs[p + 1];
+        }
+        return j;
+    }
+
+    /**
+     * Encode bytes to hex characters in ASCII at the position of buffer, the position is advanced.
+     *
+     * @param src
+     * @param srcOffset
+     * @param length    number of bytes to encode
+     * @param dst
+     * @param lowerCase
+     */
+    public static void encode(byte[] src, int srcOffset, int length, ByteBuffer dst, boolean lowerCase) {
+        checkRange(src.length, srcOffset, length);
+        if (dst.remaining() < length << 1) {
+            throw new IllegalArgumentException("Not enough room to encode " + length + " bytes in a buffer of "
+                    + dst.remaining() + " remaining");
+        }
+        if (dst.hasArray()) {
+            int position = dst.position();
+            encode(src, srcOffset, length, dst.array(), dst.arrayOffset() + position, lowerCase);
+            dst.position(position + (length << 1));
+            return;
+        }
+        char[] pairs = lowerCase ? PAIRS_LOWER : PAIRS_UPPER;
+        for (int i = srcOffset, end = srcOffset + length; i < end; i++) {
+            int p = (src[i] & 0xFF) << 1;
+            dst.put((byte) pairs[p]);
+            dst.put((byte) pairs[p + 1]);
+        }
+    }
+
+    /**
+     * Encode a large array to hex characters, segments are encoded in parallel
+     * when the array is larger than {@link #BULK_PARALLEL_THRESHOLD}.
+     *
+     * @param data
+     * @param lowerCase
+     * @return
+     */
+    public static char[] encodeBulk(byte[] data, boolean lowerCase) {
+        char[] chars = new char[data.length << 1];
+        if (data.length < BULK_PARALLEL_THRESHOLD) {
+            encode(data, 0, data.length, chars, 0, lowerCase);
+            return chars;
+        }
+        int segments = (data.length + BULK_SEGMENT_SIZE - 1) / BULK_SEGMENT_SIZE;
+        IntStream.range(0, segments).parallel().forEach(s -> {
+            int offset = s * BULK_SEGMENT_SIZE;
+            encode(data, offset, Math.min(BULK_SEGMENT_SIZE, data.length - offset), chars, offset << 1, lowerCase);
+        });
+        return chars;
+    }
+
+    /**
+     * Decode a hex string, both upper and lower case are accepted.
+     *
+     * @param hex
+     * @return
+     */
+    public static byte[] decodeHex(CharSequence hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("Odd length: " + hex.length());
+        }
+        byte[] bytes = new byte[hex.length() >> 1];
+        decode(hex, 0, hex.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decode hex characters to bytes.
+     *
+     * @param hex
+     * @param hexOffset
+     * @param hexLength number of characters, must be even
+     * @param dst
+     * @param dstOffset
+     * @return incremented destination offset
+     */
+    public static int decode(CharSequence hex, int hexOffset, int hexLength, byte[] dst, int dstOffset) {
+        if ((hexLength & 1) != 0) {
+            throw new IllegalArgumentException("Odd length: " + hexLength);
+        }
+        checkRange(hex.length(), hexOffset, hexLength);
+        checkRange(dst.length, dstOffset, hexLength >> 1);
+        int j = dstOffset;
+        for (int i = hexOffset, end = hexOffset + hexLength; i < end; i += 2) {
+            dst[j++] = (byte) (nibble(hex.charAt(i)) << 4 | nibble(hex.charAt(i + 1)));
+        }
+        return j;
+    }
+
+    /**
+     * Decode hex characters to bytes.
+     *
+     * @param hex
+     * @param hexOffset
+     * @param hexLength number of characters, must be even
+     * @param dst
+     * @param dstOffset
+     * @return incremented destination offset
+     */
+    public static int decode(char[] hex, int hexOffset, int hexLength, byte[] dst, int dstOffset) {
+        if ((hexLength & 1) != 0) {
+            throw new IllegalArgumentException("Odd length: " + hexLength);
+        }
+        checkRange(hex.length, hexOffset, hexLength);
+        checkRange(dst.length, dstOffset, hexLength >> 1);
+        int j = dstOffset;
+        for (int i = hexOffset, end = hexOffset + hexLength; i < end; i += 2) {
+            dst[j++] = (byte) (nibble(hex[i]) << 4 | nibble(hex[i + 1]));
+        }
+        return j;
+    }
+
+    /**
+     * Decode hex characters to bytes at the position of buffer, the position is advanced.
+     *
+     * @param hex
+     * @param hexOffset
+     * @param hexLength number of characters, must be even
+     * @param dst
+     */
+    public static void decode(CharSequence hex, int hexOffset, int hexLength, ByteBuffer dst) {
+        if ((hexLength & 1) != 0) {
+            throw new IllegalArgumentException("Odd length: " + hexLength);
+        }
+        checkRange(hex.length(), hexOffset, hexLength);
+        if (dst.remaining() < hexLength >> 1) {
+            throw new IllegalArgumentException("Not enough room to decode " + hexLength + " characters in a buffer of "
+                    + dst.remaining() + " remaining");
+        }
+        for (int i = hexOffset, end = hexOffset + hexLength; i < end; i += 2) {
+            dst.put((byte) (nibble(hex.charAt(i)) << 4 | nibble(hex.charAt(i + 1))));
+        }
+    }
+
+    private static int nibble(char c) {
+        int n = c < 128 ? NIBBLES[c] : -1;
+        if (n < 0) {
+            throw new IllegalArgumentException("Not a hex character: " + c);
+        }
+        return n;
+    }
+
+    private static void checkRange(int capacity, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > capacity - length) {
+            throw new IllegalArgumentException("offset (" + offset + ") + length (" + length + ") exceed the"
+                    + " capacity of the array: " + capacity);
+        }
+    }
+}
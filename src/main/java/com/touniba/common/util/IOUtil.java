@@ -3,11 +3,15 @@ package com.touniba.common.util;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * The utils for io.
  */
 public class IOUtil {
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * Read string, represent in.readUTF()
      *
@@ -20,9 +24,14 @@ public class IOUtil {
         if (length == -1) {
             return null;
         }
-        byte[] buffer = new byte[length];
-        in.readFully(buffer); // could/should use readFully(buffer,0,length)?
-        return new String(buffer, "UTF-8");
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(length);
+        try {
+            in.readFully(buffer, 0, length);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            pool.release(buffer);
+        }
     }
 
     /**
@@ -34,7 +43,7 @@ public class IOUtil {
      */
     public static void writeString(DataOutput out, String s) throws IOException {
         if (s != null) {
-            byte[] buffer = s.getBytes("UTF-8");
+            byte[] buffer = s.getBytes(StandardCharsets.UTF_8);
             int len = buffer.length;
             out.writeInt(len);
             out.write(buffer, 0, len);
@@ -44,21 +53,31 @@ public class IOUtil {
     }
 
     /**
-     * Read the bytes
+     * Read the bytes, the input is read into buffers of {@link BufferPool#getDefault()}
      *
      * @param input
      * @return
      * @throws IOException
      */
     public static byte[] readBytes(InputStream input) throws IOException {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream(1024)) {
-            byte[] temp = new byte[1024];
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(BUFFER_SIZE);
+        try {
+            int length = 0;
             int size;
-            while ((size = input.read(temp)) != -1) {
-                out.write(temp, 0, size);
+            while ((size = input.read(buffer, length, buffer.length - length)) != -1) {
+                length += size;
+                if (length == buffer.length) {
+                    byte[] bigger = pool.acquire(length << 1);
+                    System.arraycopy(buffer, 0, bigger, 0, length);
+                    // the smaller buffers are not asked again by this read
+                    pool.releaseShared(buffer);
+                    buffer = bigger;
+                }
             }
-            out.flush();
-            return out.toByteArray();
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            pool.releaseShared(buffer);
         }
     }
 
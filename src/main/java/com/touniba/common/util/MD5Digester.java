@@ -0,0 +1,184 @@
+package com.touniba.common.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.touniba.common.util.MD5HashUtils.MD5Hash;
+
+/**
+ * Pure java MD5 (RFC 1321) whose running state can be copied and saved, unlike {@link java.security.MessageDigest}.
+ * <p>
+ * {@link #digest()} does not end the computation, more data can be appended afterwards. Not thread safe.
+ */
+public class MD5Digester {
+    private static final int BLOCK_LEN = 64;
+    private static final int[] SHIFTS = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21};
+    private static final int[] SINES = new int[64];
+
+    static {
+        for (int i = 0; i < SINES.length; i++) {
+            SINES[i] = (int) (long) Math.floor(Math.abs(Math.sin(i + 1)) * 4294967296.0);
+        }
+    }
+
+    private final int[] state = new int[4];
+    private final byte[] buffer = new byte[BLOCK_LEN];
+    private final int[] words = new int[16];
+    private long count;
+
+    public MD5Digester() {
+        reset();
+    }
+
+    public void reset() {
+        state[0] = 0x67452301;
+        state[1] = 0xefcdab89;
+        state[2] = 0x98badcfe;
+        state[3] = 0x10325476;
+        count = 0;
+    }
+
+    /**
+     * Get the number of bytes digested so far.
+     *
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void update(byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        int buffered = (int) (count & (BLOCK_LEN - 1));
+        count += length;
+        if (buffered > 0) {
+            int n = Math.min(length, BLOCK_LEN - buffered);
+            System.arraycopy(data, offset, buffer, buffered, n);
+            offset += n;
+            length -= n;
+            if (buffered + n < BLOCK_LEN) {
+                return;
+            }
+            transform(buffer, 0);
+        }
+        while (length >= BLOCK_LEN) {
+            transform(data, offset);
+            offset += BLOCK_LEN;
+            length -= BLOCK_LEN;
+        }
+        System.arraycopy(data, offset, buffer, 0, length);
+    }
+
+    /**
+     * Get the digest of the data so far, the running state is kept.
+     *
+     * @return
+     */
+    public MD5Hash digest() {
+        MD5Digester copy = copy();
+        int buffered = (int) (count & (BLOCK_LEN - 1));
+        int padding = buffered < 56 ? 56 - buffered : 120 - buffered;
+        byte[] tail = new byte[padding + 8];
+        tail[0] = (byte) 0x80;
+        long bits = count << 3;
+        for (int i = 0; i < 8; i++) {
+            tail[padding + i] = (byte) (bits >>> (8 * i));
+        }
+        copy.update(tail, 0, tail.length);
+        byte[] digest = new byte[MD5Hash.MD5_LEN];
+        for (int i = 0; i < 4; i++) {
+            int v = copy.state[i];
+            for (int j = 0; j < 4; j++) {
+                digest[(i << 2) + j] = (byte) (v >>> (8 * j));
+            }
+        }
+        return MD5Hash.fromDigest(digest);
+    }
+
+    public MD5Digester copy() {
+        MD5Digester that = new MD5Digester();
+        System.arraycopy(this.state, 0, that.state, 0, state.length);
+        System.arraycopy(this.buffer, 0, that.buffer, 0, BLOCK_LEN);
+        that.count = this.count;
+        return that;
+    }
+
+    /**
+     * Write the running state, it takes 24 bytes plus the bytes of an incomplete block.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+        for (int v : state) {
+            out.writeInt(v);
+        }
+        out.write(buffer, 0, (int) (count & (BLOCK_LEN - 1)));
+    }
+
+    /**
+     * Read a running state written by {@link #writeState(DataOutput)}.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static MD5Digester readState(DataInput in) throws IOException {
+        MD5Digester digester = new MD5Digester();
+        digester.count = in.readLong();
+        if (digester.count < 0) {
+            throw new IOException("Wrong count: " + digester.count);
+        }
+        for (int i = 0; i < digester.state.length; i++) {
+            digester.state[i] = in.readInt();
+        }
+        in.readFully(digester.buffer, 0, (int) (digester.count & (BLOCK_LEN - 1)));
+        return digester;
+    }
+
+    private void transform(byte[] block, int offset) {
+        for (int i = 0; i < 16; i++) {
+            int j = offset + (i << 2);
+            words[i] = (block[j] & 0xFF) | (block[j + 1] & 0xFF) << 8 | (block[j + 2] & 0xFF) << 16 | block[j + 3] << 24;
+        }
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        for (int i = 0; i < 64; i++) {
+            int f;
+            int g;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                g = i;
+            } else if (i < 32) {
+                f = (d & b) | (~d & c);
+                g = (5 * i + 1) & 15;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                g = (3 * i + 5) & 15;
+            } else {
+                f = c ^ (b | ~d);
+                g = (7 * i) & 15;
+            }
+            int t = d;
+            d = c;
+            c = b;
+            b = b + Integer.rotateLeft(a + f + SINES[i] + words[g], SHIFTS[i]);
+            a = t;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+    }
+}
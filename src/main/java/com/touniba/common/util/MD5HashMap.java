@@ -0,0 +1,118 @@
+package com.touniba.common.util;
+
+import com.touniba.common.util.MD5HashUtils.MD5Hash;
+
+/**
+ * Map keyed by MD5 digests, every key is stored inline as two longs instead of a {@link MD5Hash} object
+ * and its byte array. The keys may live off-heap, see {@link #offHeap(int)}, values always stay on heap.
+ * <p>
+ * A key is addressed by its raw bytes, by a {@link MD5Hash}, or by the halves
+ * {@link MD5Hash#halfDigest()} and {@link MD5Hash#secondHalfDigest()}. Not thread safe.
+ *
+ * @param <V>
+ */
+public class MD5HashMap<V> {
+    private final MD5HashTable table;
+
+    public MD5HashMap() {
+        this(0);
+    }
+
+    public MD5HashMap(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    private MD5HashMap(int expectedSize, boolean offHeap) {
+        this.table = new MD5HashTable(expectedSize, offHeap, true);
+    }
+
+    /**
+     * Create a map which keeps its keys in direct memory.
+     *
+     * @param expectedSize
+     * @param <V>
+     * @return
+     */
+    public static <V> MD5HashMap<V> offHeap(int expectedSize) {
+        return new MD5HashMap<>(expectedSize, true);
+    }
+
+    /**
+     * Visitor of the entries in map.
+     *
+     * @param <V>
+     */
+    public interface Visitor<V> {
+        void visit(long high, long low, V value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valueOf(Object value) {
+        return value == MD5HashTable.ABSENT ? null : (V) value;
+    }
+
+    public V put(long high, long low, V value) {
+        return valueOf(table.put(high, low, value));
+    }
+
+    public V put(byte[] digest, int offset, V value) {
+        return put(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8), value);
+    }
+
+    public V put(MD5Hash hash, V value) {
+        return put(hash.getDigest(), 0, value);
+    }
+
+    public V get(long high, long low) {
+        return valueOf(table.get(high, low));
+    }
+
+    public V get(byte[] digest, int offset) {
+        return get(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public V get(MD5Hash hash) {
+        return get(hash.getDigest(), 0);
+    }
+
+    public boolean containsKey(long high, long low) {
+        return table.containsKey(high, low);
+    }
+
+    public boolean containsKey(byte[] digest, int offset) {
+        return containsKey(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public boolean containsKey(MD5Hash hash) {
+        return containsKey(hash.getDigest(), 0);
+    }
+
+    public V remove(long high, long low) {
+        return valueOf(table.remove(high, low));
+    }
+
+    public V remove(byte[] digest, int offset) {
+        return remove(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public V remove(MD5Hash hash) {
+        return remove(hash.getDigest(), 0);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<V> visitor) {
+        table.forEach((high, low, value) -> visitor.visit(high, low, (V) value));
+    }
+}
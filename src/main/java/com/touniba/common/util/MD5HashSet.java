@@ -0,0 +1,107 @@
+package com.touniba.common.util;
+
+import com.touniba.common.util.MD5HashUtils.MD5Hash;
+
+/**
+ * Set of MD5 digests, every digest is stored inline as two longs (16 bytes per slot) instead of
+ * a {@link MD5Hash} object and its byte array. The keys may live off-heap, see {@link #offHeap(int)}.
+ * <p>
+ * A digest is addressed by its raw bytes, by a {@link MD5Hash}, or by the halves
+ * {@link MD5Hash#halfDigest()} and {@link MD5Hash#secondHalfDigest()}. Not thread safe.
+ */
+public class MD5HashSet {
+    private final MD5HashTable table;
+
+    public MD5HashSet() {
+        this(0);
+    }
+
+    public MD5HashSet(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    private MD5HashSet(int expectedSize, boolean offHeap) {
+        this.table = new MD5HashTable(expectedSize, offHeap, false);
+    }
+
+    /**
+     * Create a set which keeps its keys in direct memory.
+     *
+     * @param expectedSize
+     * @return
+     */
+    public static MD5HashSet offHeap(int expectedSize) {
+        return new MD5HashSet(expectedSize, true);
+    }
+
+    /**
+     * Visitor of the digests in set.
+     */
+    public interface Visitor {
+        void visit(long high, long low);
+    }
+
+    public boolean add(long high, long low) {
+        return table.put(high, low, null) == MD5HashTable.ABSENT;
+    }
+
+    public boolean add(byte[] digest) {
+        return add(digest, 0);
+    }
+
+    public boolean add(byte[] digest, int offset) {
+        return add(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public boolean add(MD5Hash hash) {
+        return add(hash.getDigest(), 0);
+    }
+
+    public boolean contains(long high, long low) {
+        return table.containsKey(high, low);
+    }
+
+    public boolean contains(byte[] digest) {
+        return contains(digest, 0);
+    }
+
+    public boolean contains(byte[] digest, int offset) {
+        return contains(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public boolean contains(MD5Hash hash) {
+        return contains(hash.getDigest(), 0);
+    }
+
+    public boolean remove(long high, long low) {
+        return table.remove(high, low) != MD5HashTable.ABSENT;
+    }
+
+    public boolean remove(byte[] digest) {
+        return remove(digest, 0);
+    }
+
+    public boolean remove(byte[] digest, int offset) {
+        return remove(BytesUtils.toLong(digest, offset), BytesUtils.toLong(digest, offset + 8));
+    }
+
+    public boolean remove(MD5Hash hash) {
+        return remove(hash.getDigest(), 0);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    public void clear() {
+        table.clear();
+    }
+
+    public void forEach(Visitor visitor) {
+        table.forEach((high, low, value) -> visitor.visit(high, low));
+    }
+}
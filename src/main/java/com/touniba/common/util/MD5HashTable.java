@@ -0,0 +1,433 @@
+package com.touniba.common.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Open-addressing table keyed by a MD5 digest stored inline as two longs, shared by {@link MD5HashSet}
+ * and {@link MD5HashMap}.
+ * <p>
+ * Slots are probed linearly, an empty slot is the all-zero key and the all-zero digest itself is kept aside.
+ * The table grows incrementally: once the threshold is reached a twice larger table is allocated and
+ * every following mutation moves a few slots from the old one, so no single call pays a full rehash.
+ * A removal while the table is growing moves the run of probed slots holding the key first.
+ * Off-heap keys are kept in direct buffers of at most {@link #DIRECT_SEGMENT_SLOTS} slots each.
+ */
+class MD5HashTable {
+    /**
+     * Marks a key which is not in the table, values may be null.
+     */
+    static final Object ABSENT = new Object();
+    static final int MAX_CAPACITY = 1 << 29;
+    static final int DIRECT_SEGMENT_SLOTS = 1 << 22;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIGRATE_STEP = 8;
+
+    private final boolean offHeap;
+    private final boolean withValues;
+
+    private Slots table;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int used;
+
+    private Slots old;
+    private Object[] oldValues;
+    private int oldMask;
+    private int migrated;
+
+    private boolean hasZero;
+    private Object zeroValue;
+    private int size;
+
+    MD5HashTable(int expectedSize, boolean offHeap, boolean withValues) {
+        AssertUtils.checkArgument(expectedSize >= 0, "Wrong expected size: " + expectedSize);
+        this.offHeap = offHeap;
+        this.withValues = withValues;
+        long wanted = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+        int capacity = MIN_CAPACITY;
+        while (capacity < wanted && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    interface Visitor {
+        void visit(long high, long low, Object value);
+    }
+
+    private void allocate(int capacity) {
+        table = offHeap ? new DirectSlots(capacity) : new HeapSlots(capacity);
+        values = withValues ? new Object[capacity] : null;
+        mask = capacity - 1;
+        threshold = capacity / 4 * 3;
+        used = 0;
+    }
+
+    private static int slot(long high, long low, int mask) {
+        long h = high * 0x9E3779B97F4A7C15L + low;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private static int find(Slots slots, int mask, long high, long low) {
+        int i = slot(high, low, mask);
+        while (true) {
+            long h = slots.high(i);
+            long l = slots.low(i);
+            if (h == high && l == low) {
+                return i;
+            }
+            if (h == 0 && l == 0) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private static int freeSlot(Slots slots, int mask, long high, long low) {
+        int i = slot(high, low, mask);
+        while (slots.high(i) != 0 || slots.low(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Slots of the old table before the migrated index were copied to the new table, they are
+     * kept for the probe sequences only.
+     *
+     * @return the slot of the key in the old table, -1 if it isn't there
+     */
+    private int findOld(long high, long low) {
+        if (null == old) {
+            return -1;
+        }
+        int i = find(old, oldMask, high, low);
+        return i >= migrated ? i : -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(long high, long low) {
+        return get(high, low) != ABSENT;
+    }
+
+    /**
+     * @return the value, or {@link #ABSENT}
+     */
+    Object get(long high, long low) {
+        if (high == 0 && low == 0) {
+            return hasZero ? zeroValue : ABSENT;
+        }
+        int i = find(table, mask, high, low);
+        if (i >= 0) {
+            return withValues ? values[i] : null;
+        }
+        i = findOld(high, low);
+        if (i >= 0) {
+            return withValues ? oldValues[i] : null;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return the previous value, or {@link #ABSENT} if the key is new
+     */
+    Object put(long high, long low, Object value) {
+        if (high == 0 && low == 0) {
+            Object previous = hasZero ? zeroValue : ABSENT;
+            if (!hasZero) {
+                hasZero = true;
+                size++;
+            }
+            zeroValue = withValues ? value : null;
+            return previous;
+        }
+        migrateStep();
+        int i = find(table, mask, high, low);
+        if (i >= 0) {
+            return replace(values, i, value);
+        }
+        i = findOld(high, low);
+        if (i >= 0) {
+            return replace(oldValues, i, value);
+        }
+        if (used >= threshold) {
+            grow();
+        }
+        i = freeSlot(table, mask, high, low);
+        table.set(i, high, low);
+        if (withValues) {
+            values[i] = value;
+        }
+        used++;
+        size++;
+        return ABSENT;
+    }
+
+    private Object replace(Object[] array, int i, Object value) {
+        if (!withValues) {
+            return null;
+        }
+        Object previous = array[i];
+        array[i] = value;
+        return previous;
+    }
+
+    /**
+     * @return the removed value, or {@link #ABSENT}
+     */
+    Object remove(long high, long low) {
+        if (high == 0 && low == 0) {
+            if (!hasZero) {
+                return ABSENT;
+            }
+            Object previous = zeroValue;
+            hasZero = false;
+            zeroValue = null;
+            size--;
+            return previous;
+        }
+        migrateStep();
+        int i = find(table, mask, high, low);
+        if (i < 0) {
+            int j = findOld(high, low);
+            if (j < 0) {
+                return ABSENT;
+            }
+            migrateRun(j);
+            i = find(table, mask, high, low);
+        }
+        Object previous = withValues ? values[i] : null;
+        // shift back the following entries of the probe sequence
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            long h = table.high(j);
+            long l = table.low(j);
+            if (h == 0 && l == 0) {
+                break;
+            }
+            int k = slot(h, l, mask);
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            table.set(i, h, l);
+            if (withValues) {
+                values[i] = values[j];
+            }
+            i = j;
+        }
+        table.set(i, 0, 0);
+        if (withValues) {
+            values[i] = null;
+        }
+        used--;
+        size--;
+        return previous;
+    }
+
+    void clear() {
+        old = null;
+        oldValues = null;
+        table.clear();
+        if (withValues) {
+            Arrays.fill(values, null);
+        }
+        used = 0;
+        hasZero = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    void forEach(Visitor visitor) {
+        if (hasZero) {
+            visitor.visit(0, 0, zeroValue);
+        }
+        visit(table, values, 0, visitor);
+        if (null != old) {
+            visit(old, oldValues, migrated, visitor);
+        }
+    }
+
+    private void visit(Slots slots, Object[] array, int from, Visitor visitor) {
+        for (int i = from, capacity = slots.capacity(); i < capacity; i++) {
+            long h = slots.high(i);
+            long l = slots.low(i);
+            if (h != 0 || l != 0) {
+                visitor.visit(h, l, withValues ? array[i] : null);
+            }
+        }
+    }
+
+    private void grow() {
+        finishMigration();
+        int capacity = table.capacity();
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Table is full: " + size);
+        }
+        old = table;
+        oldValues = values;
+        oldMask = mask;
+        migrated = 0;
+        allocate(capacity << 1);
+    }
+
+    private void migrateStep() {
+        if (null != old) {
+            migrate(MIGRATE_STEP);
+        }
+    }
+
+    private void finishMigration() {
+        if (null != old) {
+            migrate(old.capacity());
+        }
+    }
+
+    /**
+     * Move the keys of the run of occupied slots around i of the old table and empty the run.
+     * The keys of a run only probe slots of the run, so emptying it doesn't break other probe sequences.
+     */
+    private void migrateRun(int i) {
+        int start = i;
+        while (true) {
+            int previous = (start - 1) & oldMask;
+            if (old.high(previous) == 0 && old.low(previous) == 0) {
+                break;
+            }
+            start = previous;
+        }
+        for (int k = start; old.high(k) != 0 || old.low(k) != 0; k = (k + 1) & oldMask) {
+            if (k >= migrated) {
+                long h = old.high(k);
+                long l = old.low(k);
+                int j = freeSlot(table, mask, h, l);
+                table.set(j, h, l);
+                if (withValues) {
+                    values[j] = oldValues[k];
+                }
+                used++;
+            }
+            old.set(k, 0, 0);
+            if (withValues) {
+                oldValues[k] = null;
+            }
+        }
+    }
+
+    private void migrate(int count) {
+        int end = Math.min(old.capacity(), migrated + count);
+        for (int i = migrated; i < end; i++) {
+            long h = old.high(i);
+            long l = old.low(i);
+            if (h == 0 && l == 0) {
+                continue;
+            }
+            int j = freeSlot(table, mask, h, l);
+            table.set(j, h, l);
+            if (withValues) {
+                values[j] = oldValues[i];
+            }
+            used++;
+        }
+        migrated = end;
+        if (migrated == old.capacity()) {
+            old = null;
+            oldValues = null;
+        }
+    }
+
+    /**
+     * Key storage, two longs per slot.
+     */
+    private abstract static class Slots {
+        abstract int capacity();
+
+        abstract long high(int i);
+
+        abstract long low(int i);
+
+        abstract void set(int i, long high, long low);
+
+        abstract void clear();
+    }
+
+    private static final class HeapSlots extends Slots {
+        private final long[] keys;
+
+        HeapSlots(int capacity) {
+            this.keys = new long[capacity << 1];
+        }
+
+        int capacity() {
+            return keys.length >> 1;
+        }
+
+        long high(int i) {
+            return keys[i << 1];
+        }
+
+        long low(int i) {
+            return keys[(i << 1) + 1];
+        }
+
+        void set(int i, long high, long low) {
+            keys[i << 1] = high;
+            keys[(i << 1) + 1] = low;
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0);
+        }
+    }
+
+    private static final class DirectSlots extends Slots {
+        private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(DIRECT_SEGMENT_SLOTS);
+        private static final int SEGMENT_MASK = DIRECT_SEGMENT_SLOTS - 1;
+
+        private final ByteBuffer[] segments;
+        private final int capacity;
+
+        DirectSlots(int capacity) {
+            int segmentSlots = Math.min(capacity, DIRECT_SEGMENT_SLOTS);
+            this.segments = new ByteBuffer[capacity / segmentSlots];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = ByteBuffer.allocateDirect(segmentSlots << 4).order(ByteOrder.nativeOrder());
+            }
+            this.capacity = capacity;
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        long high(int i) {
+            return segments[i >>> SEGMENT_SHIFT].getLong((i & SEGMENT_MASK) << 4);
+        }
+
+        long low(int i) {
+            return segments[i >>> SEGMENT_SHIFT].getLong(((i & SEGMENT_MASK) << 4) + 8);
+        }
+
+        void set(int i, long high, long low) {
+            ByteBuffer segment = segments[i >>> SEGMENT_SHIFT];
+            int position = (i & SEGMENT_MASK) << 4;
+            segment.putLong(position, high);
+            segment.putLong(position + 8, low);
+        }
+
+        void clear() {
+            for (ByteBuffer segment : segments) {
+                for (int i = 0, limit = segment.capacity(); i < limit; i += 8) {
+                    segment.putLong(i, 0);
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,36 @@
 package com.touniba.common.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 /**
  * MD5 hash utils
  */
 public class MD5HashUtils {
     public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    /**
+     * Batches smaller than this are never split across threads.
+     */
+    public static final int PARALLEL_BATCH_THRESHOLD = 1024;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MD5Hash.MD5_LEN]);
 
     /**
      * Make a signature for string.
@@ -57,6 +78,34 @@ public class MD5HashUtils {
         return makeSignature(md5, length);
     }
 
+    /**
+     * Make a signature with length for the content of file, the file is read in memory-mapped windows.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static String makeSignatureWithLength(Path path) throws IOException {
+        assert null != path;
+        MessageDigest digester = MD5Hash.digester();
+        long length = MD5Hash.update(digester, path);
+        return makeSignature(new MD5Hash(digester.digest()), length);
+    }
+
+    /**
+     * Make a signature with length for the remaining content of stream, the stream is not closed.
+     *
+     * @param input
+     * @return
+     * @throws IOException
+     */
+    public static String makeSignatureWithLength(InputStream input) throws IOException {
+        assert null != input;
+        MessageDigest digester = MD5Hash.digester();
+        long length = MD5Hash.update(digester, input);
+        return makeSignature(new MD5Hash(digester.digest()), length);
+    }
+
     /**
      * Make a signature for data.
      *
@@ -65,8 +114,19 @@ public class MD5HashUtils {
      * @return
      */
     public static String makeSignature(MD5Hash md5, int length) {
-        String hex = Integer.toHexString(length);
-        StringBuilder sb = new StringBuilder(MD5Hash.MD5_LEN * 2 + 8);// 40位
+        return makeSignature(md5, length & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Make a signature for data. The length takes 8 hex characters, or more when it is beyond 32 bits.
+     *
+     * @param md5
+     * @param length
+     * @return
+     */
+    public static String makeSignature(MD5Hash md5, long length) {
+        String hex = Long.toHexString(length);
+        StringBuilder sb = new StringBuilder(MD5Hash.MD5_LEN * 2 + Math.max(8, hex.length()));// 40位
         sb.append(md5.toString());
         for (int i = hex.length(); i < 8; ++i) {
             sb.append('0');
@@ -76,21 +136,329 @@ public class MD5HashUtils {
     }
 
     /**
-     * MD5 Hash
+     * Digest every buffer into a packed result, see {@link #digestBatch(byte[][], long[], boolean)}.
+     *
+     * @param buffers
+     * @param result
      */
-    public static class MD5Hash {
-        public static final int MD5_LEN = 16;
-        private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
-        private static final MessageDigest DIGESTER;
+    public static void digestBatch(byte[][] buffers, long[] result) {
+        digestBatch(buffers, result, false);
+    }
+
+    /**
+     * Digest every buffer into a packed result. The hash of buffers[i] is stored as two big-endian longs,
+     * result[2 * i] (same as {@link MD5Hash#halfDigest()}) and result[2 * i + 1]; nothing is allocated per buffer.
+     *
+     * @param buffers
+     * @param result   at least 2 * buffers.length long
+     * @param parallel spread the batch across the common pool when it is large enough
+     */
+    public static void digestBatch(byte[][] buffers, long[] result, boolean parallel) {
+        assert null != buffers;
+        checkBatchResult(buffers.length, result);
+        batchRange(buffers.length, parallel).forEach(i -> digestInto(buffers[i], 0, buffers[i].length, result, i << 1));
+    }
+
+    /**
+     * Digest slices of one array into a packed result, see {@link #digestBatch(byte[][], long[], boolean)}.
+     *
+     * @param data
+     * @param offsets  start of every slice
+     * @param lengths  length of every slice
+     * @param count    number of slices
+     * @param result   at least 2 * count long
+     * @param parallel spread the batch across the common pool when it is large enough
+     */
+    public static void digestBatch(byte[] data, int[] offsets, int[] lengths, int count, long[] result, boolean parallel) {
+        assert null != data;
+        if (offsets.length < count || lengths.length < count) {
+            throw new IllegalArgumentException("Slices are less than count: " + count);
+        }
+        checkBatchResult(count, result);
+        batchRange(count, parallel).forEach(i -> digestInto(data, offsets[i], lengths[i], result, i << 1));
+    }
+
+    private static void checkBatchResult(int count, long[] result) {
+        if (result.length < (long) count << 1) {
+            throw new IllegalArgumentException("Result is too small: " + result.length + ", expected " + ((long) count << 1));
+        }
+    }
+
+    private static IntStream batchRange(int count, boolean parallel) {
+        IntStream range = IntStream.range(0, count);
+        return parallel && count >= PARALLEL_BATCH_THRESHOLD ? range.parallel() : range;
+    }
 
-        static {
+    private static void digestInto(byte[] data, int offset, int length, long[] result, int index) {
+        MessageDigest digester = MD5Hash.digester();
+        byte[] scratch = SCRATCH.get();
+        digester.update(data, offset, length);
+        try {
+            digester.digest(scratch, 0, MD5Hash.MD5_LEN);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        result[index] = BytesUtils.toLong(scratch, 0);
+        result[index + 1] = BytesUtils.toLong(scratch, BytesUtils.SIZEOF_LONG);
+    }
+
+    /**
+     * Make a tree signature for the content of file with the default chunk size.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     * @see MD5TreeHash
+     */
+    public static String makeTreeSignature(Path path) throws IOException {
+        return makeTreeHash(path, MD5TreeHash.DEFAULT_CHUNK_SIZE).toString();
+    }
+
+    /**
+     * Make a tree hash for the content of file, the chunks are hashed in parallel on the common pool.
+     *
+     * @param path
+     * @param chunkSize
+     * @return
+     * @throws IOException
+     */
+    public static MD5TreeHash makeTreeHash(Path path, int chunkSize) throws IOException {
+        return makeTreeHash(path, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Make a tree hash for the content of file, the chunks are hashed in parallel on the given pool.
+     *
+     * @param path
+     * @param chunkSize
+     * @param pool
+     * @return
+     * @throws IOException
+     */
+    public static MD5TreeHash makeTreeHash(Path path, int chunkSize, ForkJoinPool pool) throws IOException {
+        assert null != path;
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Wrong chunk size: " + chunkSize);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long count = Math.max(1, (length + chunkSize - 1) / chunkSize);
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many chunks: " + count);
+            }
+            MD5Hash[] chunks = new MD5Hash[(int) count];
             try {
-                DIGESTER = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException e) {
-                throw new RuntimeException(e);
+                pool.invoke(new ChunkDigestTask(channel, length, chunkSize, chunks, 0, chunks.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return new MD5TreeHash(length, chunkSize, chunks);
+        }
+    }
+
+    /**
+     * Digest a range of chunks, split in halves until the range is small enough.
+     */
+    private static class ChunkDigestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long length;
+        private final int chunkSize;
+        private final MD5Hash[] chunks;
+        private final int from;
+        private final int to;
+
+        ChunkDigestTask(FileChannel channel, long length, int chunkSize, MD5Hash[] chunks, int from, int to) {
+            this.channel = channel;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkDigestTask(channel, length, chunkSize, chunks, from, middle),
+                        new ChunkDigestTask(channel, length, chunkSize, chunks, middle, to));
+                return;
+            }
+            long position = (long) from * chunkSize;
+            MessageDigest digester = MD5Hash.digester();
+            digester.update(MD5TreeHash.LEAF_PREFIX);
+            try {
+                MD5Hash.update(digester, channel, position, Math.min(chunkSize, length - position));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks[from] = new MD5Hash(digester.digest());
+        }
+    }
+
+    /**
+     * Merkle-style tree hash of a file. The file is split into fixed-size chunks, every chunk has
+     * its own MD5, and the root is built by hashing pairs of nodes level by level.
+     * As in RFC 6962 a leaf is MD5 of 0x00 followed by the chunk and an inner node is MD5 of 0x01
+     * followed by both children, so a leaf can never collide with an inner node; an odd node is
+     * carried up to the next level as is, which keeps its domain.
+     * <p>
+     * The signature is {@link #VERSION} + root (32 hex) + chunk size (8 hex) + length (16 hex),
+     * 58 characters in total, so it can never be confused with a 40 characters signature with length.
+     */
+    public static class MD5TreeHash {
+        public static final String VERSION = "t1";
+        public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+        public static final int SIGNATURE_LEN = 2 + MD5Hash.MD5_LEN * 2 + 8 + 16;
+        static final byte LEAF_PREFIX = 0x00;
+        static final byte NODE_PREFIX = 0x01;
+
+        private final long length;
+        private final int chunkSize;
+        private final MD5Hash[] chunks;
+        private final MD5Hash root;
+
+        MD5TreeHash(long length, int chunkSize, MD5Hash[] chunks) {
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+            this.root = merkleRoot(chunks);
+        }
+
+        private static MD5Hash merkleRoot(MD5Hash[] chunks) {
+            MD5Hash[] level = chunks;
+            MessageDigest digester = MD5Hash.digester();
+            while (level.length > 1) {
+                MD5Hash[] parent = new MD5Hash[(level.length + 1) >>> 1];
+                for (int i = 0; i < parent.length; i++) {
+                    int left = i << 1;
+                    if (left + 1 == level.length) {
+                        parent[i] = level[left];
+                        continue;
+                    }
+                    digester.update(NODE_PREFIX);
+                    digester.update(level[left].getDigest());
+                    digester.update(level[left + 1].getDigest());
+                    parent[i] = new MD5Hash(digester.digest());
+                }
+                level = parent;
             }
+            return level[0];
         }
 
+        /**
+         * Check whether the signature is made by {@link #toString()}.
+         *
+         * @param signature
+         * @return
+         */
+        public static boolean isTreeSignature(String signature) {
+            return null != signature && signature.length() == SIGNATURE_LEN && signature.startsWith(VERSION);
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public int getChunkCount() {
+            return chunks.length;
+        }
+
+        public MD5Hash getRoot() {
+            return root;
+        }
+
+        public MD5Hash getChunk(int index) {
+            return chunks[index];
+        }
+
+        public List<MD5Hash> getChunks() {
+            return Collections.unmodifiableList(Arrays.asList(chunks));
+        }
+
+        /**
+         * Get the offset of chunk in file.
+         *
+         * @param index
+         * @return
+         */
+        public long getChunkOffset(int index) {
+            return (long) index * chunkSize;
+        }
+
+        /**
+         * Get the length of chunk, only the last chunk may be shorter than chunk size.
+         *
+         * @param index
+         * @return
+         */
+        public int getChunkLength(int index) {
+            return (int) Math.min(chunkSize, length - getChunkOffset(index));
+        }
+
+        /**
+         * Get the indexes of chunks which differ from the other tree hash,
+         * chunks beyond the end of either side are counted as changed.
+         *
+         * @param other
+         * @return
+         */
+        public List<Integer> changedChunks(MD5TreeHash other) {
+            if (other.chunkSize != chunkSize) {
+                throw new IllegalArgumentException("Chunk size mismatch: " + chunkSize + " vs " + other.chunkSize);
+            }
+            List<Integer> changed = new ArrayList<>();
+            if (root.equals(other.root) && length == other.length) {
+                return changed;
+            }
+            int count = Math.max(chunks.length, other.chunks.length);
+            for (int i = 0; i < count; i++) {
+                if (i >= chunks.length || i >= other.chunks.length
+                        || getChunkLength(i) != other.getChunkLength(i) || !chunks[i].equals(other.chunks[i])) {
+                    changed.add(i);
+                }
+            }
+            return changed;
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder(SIGNATURE_LEN);
+            sb.append(VERSION).append(root.toString());
+            appendHex(sb, chunkSize & 0xFFFFFFFFL, 8);
+            appendHex(sb, length, 16);
+            return sb.toString();
+        }
+
+        private static void appendHex(StringBuilder sb, long value, int width) {
+            String hex = Long.toHexString(value);
+            for (int i = hex.length(); i < width; ++i) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        }
+    }
+
+    /**
+     * MD5 Hash
+     */
+    public static class MD5Hash {
+        public static final int MD5_LEN = 16;
+        /**
+         * Size of the memory-mapped window when digesting a file.
+         */
+        static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+        private static final int BUFFER_SIZE = 8192;
+        /**
+         * One digester per thread, so concurrent callers never contend on a shared lock.
+         */
+        private static final ThreadLocal<MessageDigest> DIGESTER = ThreadLocal.withInitial(MD5Hash::newDigester);
+
         private byte[] digest;
 
 
@@ -111,6 +479,34 @@ public class MD5HashUtils {
 
         // End of Constructor
 
+        /**
+         * Wrap a digest computed elsewhere, the array is not copied.
+         *
+         * @param digest
+         * @return
+         */
+        public static MD5Hash fromDigest(byte[] digest) {
+            return new MD5Hash(digest);
+        }
+
+        /**
+         * Rebuild a hash from {@link #halfDigest()} and {@link #secondHalfDigest()}.
+         *
+         * @param high
+         * @param low
+         * @return
+         */
+        public static MD5Hash fromHalves(long high, long low) {
+            byte[] digest = new byte[MD5_LEN];
+            for (int i = 7; i >= 0; i--) {
+                digest[i] = (byte) high;
+                digest[i + 8] = (byte) low;
+                high >>>= 8;
+                low >>>= 8;
+            }
+            return new MD5Hash(digest);
+        }
+
         public static MD5Hash digest(String string) {
             return digest(string.getBytes());
         }
@@ -120,23 +516,136 @@ public class MD5HashUtils {
         }
 
         public static MD5Hash digest(byte[] data, int start, int len) {
-            byte[] digest;
-            synchronized (DIGESTER) {
-                DIGESTER.update(data, start, len);
-                digest = DIGESTER.digest();
+            MessageDigest digester = digester();
+            digester.update(data, start, len);
+            return new MD5Hash(digester.digest());
+        }
+
+        /**
+         * Digest the remaining content of stream, the stream is not closed.
+         *
+         * @param input
+         * @return
+         * @throws IOException
+         */
+        public static MD5Hash digest(InputStream input) throws IOException {
+            MessageDigest digester = digester();
+            update(digester, input);
+            return new MD5Hash(digester.digest());
+        }
+
+        /**
+         * Digest the remaining content of channel, the channel is not closed.
+         *
+         * @param channel
+         * @return
+         * @throws IOException
+         */
+        public static MD5Hash digest(ReadableByteChannel channel) throws IOException {
+            MessageDigest digester = digester();
+            update(digester, channel);
+            return new MD5Hash(digester.digest());
+        }
+
+        /**
+         * Digest the content of file. The file is walked in memory-mapped windows,
+         * so the heap usage does not depend on the file size.
+         *
+         * @param path
+         * @return
+         * @throws IOException
+         */
+        public static MD5Hash digest(Path path) throws IOException {
+            MessageDigest digester = digester();
+            update(digester, path);
+            return new MD5Hash(digester.digest());
+        }
+
+        static long update(MessageDigest digester, InputStream input) throws IOException {
+            BufferPool pool = BufferPool.getDefault();
+            byte[] buffer = pool.acquire(BUFFER_SIZE);
+            long total = 0;
+            int size;
+            try {
+                while ((size = input.read(buffer)) != -1) {
+                    digester.update(buffer, 0, size);
+                    total += size;
+                }
+            } catch (IOException | RuntimeException e) {
+                digester.reset();
+                throw e;
+            } finally {
+                pool.release(buffer);
             }
-            return new MD5Hash(digest);
+            return total;
         }
 
-        private static int charToNibble(char c) {
-            if (c >= '0' && c <= '9') {
-                return c - '0';
-            } else if (c >= 'a' && c <= 'f') {
-                return 0xa + (c - 'a');
-            } else if (c >= 'A' && c <= 'F') {
-                return 0xA + (c - 'A');
-            } else {
-                throw new RuntimeException("Not a hex character: " + c);
+        static long update(MessageDigest digester, ReadableByteChannel channel) throws IOException {
+            BufferPool pool = BufferPool.getDefault();
+            ByteBuffer buffer = pool.acquireDirect(BUFFER_SIZE);
+            long total = 0;
+            int size;
+            try {
+                while ((size = channel.read(buffer)) != -1) {
+                    buffer.flip();
+                    digester.update(buffer);
+                    buffer.clear();
+                    total += size;
+                }
+            } catch (IOException | RuntimeException e) {
+                digester.reset();
+                throw e;
+            } finally {
+                pool.releaseDirect(buffer);
+            }
+            return total;
+        }
+
+        static long update(MessageDigest digester, Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return update(digester, channel, 0, channel.size());
+            }
+        }
+
+        /**
+         * Feed a range of file to the digester through memory-mapped windows.
+         *
+         * @param digester
+         * @param channel
+         * @param position
+         * @param length
+         * @return
+         * @throws IOException
+         */
+        static long update(MessageDigest digester, FileChannel channel, long position, long length) throws IOException {
+            long end = position + length;
+            try {
+                for (long offset = position; offset < end; offset += MAPPED_WINDOW_SIZE) {
+                    long size = Math.min(MAPPED_WINDOW_SIZE, end - offset);
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                    digester.update(window);
+                }
+            } catch (IOException | RuntimeException e) {
+                digester.reset();
+                throw e;
+            }
+            return length;
+        }
+
+        /**
+         * Get the MD5 digester of current thread, it is always in reset state.
+         *
+         * @return
+         */
+        static MessageDigest digester() {
+            return DIGESTER.get();
+        }
+
+        private static MessageDigest newDigester() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
             }
         }
 
@@ -149,10 +658,7 @@ public class MD5HashUtils {
                 throw new IllegalArgumentException("Wrong length: " + hex.length());
             }
             byte[] digest = new byte[MD5_LEN];
-            for (int i = 0; i < MD5_LEN; i++) {
-                int j = i << 1;
-                digest[i] = (byte) (charToNibble(hex.charAt(j)) << 4 | charToNibble(hex.charAt(j + 1)));
-            }
+            HexUtils.decode(hex, 0, MD5_LEN * 2, digest, 0);
             this.digest = digest;
         }
 
@@ -163,6 +669,15 @@ public class MD5HashUtils {
             return value;
         }
 
+        /**
+         * The last 8 bytes of digest as a big-endian long, the counterpart of {@link #halfDigest()}.
+         *
+         * @return
+         */
+        public long secondHalfDigest() {
+            return BytesUtils.toLong(digest, 8);
+        }
+
         public int hashCode() {
             return // xor four ints
                     (digest[0] | (digest[1] << 8) | (digest[2] << 16) | (digest[3] << 24)) ^
@@ -186,13 +701,7 @@ public class MD5HashUtils {
         }
 
         public String toString() {
-            StringBuilder buf = new StringBuilder(MD5_LEN * 2);
-            for (int i = 0; i < MD5_LEN; i++) {
-                int b = digest[i];
-                buf.append(HEX_DIGITS[(b >> 4) & 0xf]);
-                buf.append(HEX_DIGITS[b & 0xf]);
-            }
-            return buf.toString();
+            return HexUtils.encodeHex(digest, true);
         }
     }
 }
@@ -0,0 +1,415 @@
+package com.touniba.common.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Order-preserving encodings, the encoded bytes sort as unsigned bytes ({@link BytesUtils#compareTo(byte[], byte[])})
+ * in the same order as the values.
+ * <p>
+ * Fixed width values (int, long, float, double) take the size of their {@link BytesUtils} encoding,
+ * BigDecimal and byte arrays are self delimiting, so components can be concatenated to a composite key
+ * ({@link #toKey(Object...)}) which sorts by the first component, then by the second, etc.
+ * <p>
+ * The put methods return the incremented offset, the skip methods return the offset after an encoded value.
+ */
+public class OrderedBytesUtils {
+    private static final int INT_SIGN = Integer.MIN_VALUE;
+    private static final long LONG_SIGN = Long.MIN_VALUE;
+
+    private static final byte DECIMAL_NEGATIVE = 0x01;
+    private static final byte DECIMAL_ZERO = 0x02;
+    private static final byte DECIMAL_POSITIVE = 0x03;
+    /**
+     * Ends the digits of a BigDecimal, digit pairs are encoded as 1 to 100.
+     */
+    private static final byte DECIMAL_TERMINATOR = 0x00;
+
+    /**
+     * Escapes a 0x00 inside an encoded byte array.
+     */
+    private static final byte BYTES_ESCAPE = (byte) 0xFF;
+    /**
+     * Ends an encoded byte array after a 0x00.
+     */
+    private static final byte BYTES_TERMINATOR = 0x01;
+
+    /**
+     * Put an int value with the sign bit flipped, big-endian.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    int to write out
+     * @return incremented offset
+     */
+    public static int putInt(byte[] bytes, int offset, int val) {
+        return BytesUtils.putInt(bytes, offset, val ^ INT_SIGN);
+    }
+
+    /**
+     * Reverses {@link #putInt(byte[], int, int)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the int value
+     */
+    public static int toInt(byte[] bytes, int offset) {
+        return BytesUtils.toInt(bytes, offset) ^ INT_SIGN;
+    }
+
+    /**
+     * Put a long value with the sign bit flipped, big-endian.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    long to write out
+     * @return incremented offset
+     */
+    public static int putLong(byte[] bytes, int offset, long val) {
+        return BytesUtils.putLong(bytes, offset, val ^ LONG_SIGN);
+    }
+
+    /**
+     * Reverses {@link #putLong(byte[], int, long)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the long value
+     */
+    public static long toLong(byte[] bytes, int offset) {
+        return BytesUtils.toLong(bytes, offset) ^ LONG_SIGN;
+    }
+
+    /**
+     * Put a float value, a positive float has the sign bit flipped, a negative one all bits flipped.
+     * -0.0 sorts before 0.0 and NaN after positive infinity.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    float to write out
+     * @return incremented offset
+     */
+    public static int putFloat(byte[] bytes, int offset, float val) {
+        int bits = Float.floatToIntBits(val);
+        return BytesUtils.putInt(bytes, offset, bits ^ ((bits >> 31) | INT_SIGN));
+    }
+
+    /**
+     * Reverses {@link #putFloat(byte[], int, float)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the float value
+     */
+    public static float toFloat(byte[] bytes, int offset) {
+        int bits = BytesUtils.toInt(bytes, offset);
+        return Float.intBitsToFloat(bits ^ (~bits >> 31 | INT_SIGN));
+    }
+
+    /**
+     * Put a double value, a positive double has the sign bit flipped, a negative one all bits flipped.
+     * -0.0 sorts before 0.0 and NaN after positive infinity.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    double to write out
+     * @return incremented offset
+     */
+    public static int putDouble(byte[] bytes, int offset, double val) {
+        long bits = Double.doubleToLongBits(val);
+        return BytesUtils.putLong(bytes, offset, bits ^ ((bits >> 63) | LONG_SIGN));
+    }
+
+    /**
+     * Reverses {@link #putDouble(byte[], int, double)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the double value
+     */
+    public static double toDouble(byte[] bytes, int offset) {
+        long bits = BytesUtils.toLong(bytes, offset);
+        return Double.longBitsToDouble(bits ^ (~bits >> 63 | LONG_SIGN));
+    }
+
+    /**
+     * Number of bytes of {@link #putBigDecimal(byte[], int, BigDecimal)}.
+     *
+     * @param val
+     * @return
+     */
+    public static int sizeOf(BigDecimal val) {
+        if (val.signum() == 0) {
+            return 1;
+        }
+        int digits = val.stripTrailingZeros().precision();
+        return 1 + BytesUtils.SIZEOF_INT + (digits + 1) / 2 + 1;
+    }
+
+    /**
+     * Put a BigDecimal value: a sign byte, then for a non zero value the decimal exponent
+     * of 0.d1d2d3... as an ordered int, the digit pairs as bytes 1 to 100 and a 0 terminator.
+     * All bytes after the sign are flipped for a negative value.
+     * <p>
+     * Values equal by {@link BigDecimal#compareTo(BigDecimal)} have the same encoding,
+     * the scale is not kept.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    BigDecimal to write out
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putBigDecimal(byte[] bytes, int offset, BigDecimal val) {
+        int signum = val.signum();
+        if (signum == 0) {
+            checkRoom(bytes, offset, 1);
+            bytes[offset] = DECIMAL_ZERO;
+            return offset + 1;
+        }
+        BigDecimal normalized = val.stripTrailingZeros();
+        String digits = normalized.unscaledValue().abs().toString();
+        int length = digits.length();
+        checkRoom(bytes, offset, 1 + BytesUtils.SIZEOF_INT + (length + 1) / 2 + 1);
+        int start = offset;
+        bytes[offset++] = signum < 0 ? DECIMAL_NEGATIVE : DECIMAL_POSITIVE;
+        offset = putInt(bytes, offset, length - normalized.scale());
+        for (int i = 0; i < length; i += 2) {
+            int high = digits.charAt(i) - '0';
+            int low = i + 1 < length ? digits.charAt(i + 1) - '0' : 0;
+            bytes[offset++] = (byte) (high * 10 + low + 1);
+        }
+        bytes[offset++] = DECIMAL_TERMINATOR;
+        if (signum < 0) {
+            for (int i = start + 1; i < offset; i++) {
+                bytes[i] = (byte) ~bytes[i];
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Reverses {@link #putBigDecimal(byte[], int, BigDecimal)}, the result has no trailing zeros.
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the BigDecimal value
+     * @throws IllegalArgumentException if the bytes are not an encoded BigDecimal
+     */
+    public static BigDecimal toBigDecimal(byte[] bytes, int offset) {
+        checkRoom(bytes, offset, 1);
+        byte sign = bytes[offset];
+        if (sign == DECIMAL_ZERO) {
+            return BigDecimal.ZERO;
+        }
+        AssertUtils.checkArgument(sign == DECIMAL_NEGATIVE || sign == DECIMAL_POSITIVE,
+                "Not an encoded BigDecimal at offset " + offset);
+        int flip = sign == DECIMAL_NEGATIVE ? 0xFF : 0;
+        checkRoom(bytes, offset + 1, BytesUtils.SIZEOF_INT);
+        int exponent = BytesUtils.toInt(bytes, offset + 1) ^ (flip == 0 ? INT_SIGN : ~INT_SIGN);
+        StringBuilder digits = new StringBuilder();
+        for (int i = offset + 1 + BytesUtils.SIZEOF_INT; ; i++) {
+            checkRoom(bytes, i, 1);
+            int pair = (bytes[i] ^ flip) & 0xFF;
+            if (pair == DECIMAL_TERMINATOR) {
+                break;
+            }
+            AssertUtils.checkArgument(pair <= 100, "Not an encoded BigDecimal at offset " + offset);
+            digits.append((char) ('0' + (pair - 1) / 10)).append((char) ('0' + (pair - 1) % 10));
+        }
+        BigInteger unscaled = new BigInteger(digits.toString());
+        BigDecimal val = new BigDecimal(flip == 0 ? unscaled : unscaled.negate(), digits.length() - exponent);
+        return val.stripTrailingZeros();
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset offset of an encoded BigDecimal
+     * @return the offset after it
+     */
+    public static int skipBigDecimal(byte[] bytes, int offset) {
+        checkRoom(bytes, offset, 1);
+        if (bytes[offset] == DECIMAL_ZERO) {
+            return offset + 1;
+        }
+        byte terminator = bytes[offset] == DECIMAL_NEGATIVE ? (byte) ~DECIMAL_TERMINATOR : DECIMAL_TERMINATOR;
+        for (int i = offset + 1 + BytesUtils.SIZEOF_INT; i < bytes.length; i++) {
+            if (bytes[i] == terminator) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Truncated BigDecimal at offset " + offset);
+    }
+
+    /**
+     * Number of bytes of {@link #putBytes(byte[], int, byte[], int, int)}.
+     *
+     * @param src
+     * @param srcOffset
+     * @param srcLength
+     * @return
+     */
+    public static int sizeOf(byte[] src, int srcOffset, int srcLength) {
+        int size = srcLength + 2;
+        for (int i = srcOffset; i < srcOffset + srcLength; i++) {
+            if (src[i] == 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Put a byte array with every 0x00 escaped as 0x00 0xFF and terminated by 0x00 0x01,
+     * so a prefix sorts before the longer array.
+     *
+     * @param bytes     the byte array
+     * @param offset    position in the array
+     * @param src       array to write out
+     * @param srcOffset source offset
+     * @param srcLength source length
+     * @return incremented offset
+     * @throws IllegalArgumentException if the byte array given doesn't have
+     *                                  enough room at the offset specified.
+     */
+    public static int putBytes(byte[] bytes, int offset, byte[] src, int srcOffset, int srcLength) {
+        checkRoom(bytes, offset, sizeOf(src, srcOffset, srcLength));
+        for (int i = srcOffset; i < srcOffset + srcLength; i++) {
+            byte b = src[i];
+            bytes[offset++] = b;
+            if (b == 0) {
+                bytes[offset++] = BYTES_ESCAPE;
+            }
+        }
+        bytes[offset++] = 0;
+        bytes[offset++] = BYTES_TERMINATOR;
+        return offset;
+    }
+
+    /**
+     * Reverses {@link #putBytes(byte[], int, byte[], int, int)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the byte array
+     */
+    public static byte[] toBytes(byte[] bytes, int offset) {
+        int end = skipBytes(bytes, offset);
+        byte[] result = new byte[end - offset - 2];
+        int length = 0;
+        for (int i = offset; i < end - 2; i++) {
+            result[length++] = bytes[i];
+            if (bytes[i] == 0) {
+                i++;
+            }
+        }
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    /**
+     * @param bytes  the byte array
+     * @param offset offset of an encoded byte array
+     * @return the offset after it
+     */
+    public static int skipBytes(byte[] bytes, int offset) {
+        for (int i = offset; i < bytes.length - 1; i++) {
+            if (bytes[i] == 0) {
+                if (bytes[i + 1] == BYTES_TERMINATOR) {
+                    return i + 2;
+                }
+                AssertUtils.checkArgument(bytes[i + 1] == BYTES_ESCAPE, "Not an encoded byte array at offset " + offset);
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("Truncated byte array at offset " + offset);
+    }
+
+    /**
+     * Put a String as its UTF-8 bytes, UTF-8 sorts in code point order.
+     *
+     * @param bytes  the byte array
+     * @param offset position in the array
+     * @param val    String to write out
+     * @return incremented offset
+     */
+    public static int putString(byte[] bytes, int offset, String val) {
+        byte[] utf8 = BytesUtils.toBytes(val);
+        return putBytes(bytes, offset, utf8, 0, utf8.length);
+    }
+
+    /**
+     * Reverses {@link #putString(byte[], int, String)}
+     *
+     * @param bytes  the byte array
+     * @param offset offset into array
+     * @return the String value
+     */
+    public static String toString(byte[] bytes, int offset) {
+        return BytesUtils.toString(toBytes(bytes, offset));
+    }
+
+    /**
+     * Encode a composite key, components are Integer, Long, Float, Double, BigDecimal, String or byte[].
+     * Read it back with the to and skip methods in the same order.
+     *
+     * @param components
+     * @return the key
+     */
+    public static byte[] toKey(Object... components) {
+        int size = 0;
+        for (Object component : components) {
+            size += sizeOfComponent(component);
+        }
+        byte[] key = new byte[size];
+        int offset = 0;
+        for (Object component : components) {
+            offset = putComponent(key, offset, component);
+        }
+        return key;
+    }
+
+    private static int sizeOfComponent(Object component) {
+        if (component instanceof Integer || component instanceof Float) {
+            return BytesUtils.SIZEOF_INT;
+        } else if (component instanceof Long || component instanceof Double) {
+            return BytesUtils.SIZEOF_LONG;
+        } else if (component instanceof BigDecimal) {
+            return sizeOf((BigDecimal) component);
+        } else if (component instanceof String) {
+            byte[] utf8 = BytesUtils.toBytes((String) component);
+            return sizeOf(utf8, 0, utf8.length);
+        } else if (component instanceof byte[]) {
+            byte[] array = (byte[]) component;
+            return sizeOf(array, 0, array.length);
+        }
+        throw new IllegalArgumentException("Unsupported key component: "
+                + (null == component ? null : component.getClass().getName()));
+    }
+
+    private static int putComponent(byte[] key, int offset, Object component) {
+        if (component instanceof Integer) {
+            return putInt(key, offset, (Integer) component);
+        } else if (component instanceof Long) {
+            return putLong(key, offset, (Long) component);
+        } else if (component instanceof Float) {
+            return putFloat(key, offset, (Float) component);
+        } else if (component instanceof Double) {
+            return putDouble(key, offset, (Double) component);
+        } else if (component instanceof BigDecimal) {
+            return putBigDecimal(key, offset, (BigDecimal) component);
+        } else if (component instanceof String) {
+            return putString(key, offset, (String) component);
+        }
+        byte[] array = (byte[]) component;
+        return putBytes(key, offset, array, 0, array.length);
+    }
+
+    private static void checkRoom(byte[] bytes, int offset, int length) {
+        if (offset < 0 || bytes.length - offset < length) {
+            throw new IllegalArgumentException("offset (" + offset + ") + length (" + length + ") exceed the"
+                    + " capacity of the array: " + bytes.length);
+        }
+    }
+}
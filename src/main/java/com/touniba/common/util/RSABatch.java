@@ -0,0 +1,221 @@
+package com.touniba.common.util;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Cipher;
+
+/**
+ * Batch RSA operations fanned out over a fork-join pool.
+ * <p>
+ * Every worker uses its own pooled cipher or signature ({@link RSACipherPool}, {@link RSASignaturePool}),
+ * results are returned in input order and a failure is reported on its element without
+ * affecting the others.
+ */
+public class RSABatch {
+    /**
+     * Number of elements handled by one task without further splitting.
+     */
+    private static final int TASK_SIZE = 16;
+
+    /**
+     * Outcome of one element of a batch.
+     *
+     * @param <T>
+     */
+    public static final class Result<T> {
+        private final T value;
+        private final Exception error;
+
+        private Result(T value, Exception error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return null == error;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public String toString() {
+            return isSuccess() ? "Result{value=" + value + "}" : "Result{error=" + error + "}";
+        }
+    }
+
+    /**
+     * Operation on one element.
+     *
+     * @param <I>
+     * @param <T>
+     */
+    interface Operation<I, T> {
+        T apply(I input) throws Exception;
+    }
+
+    /**
+     * Decrypt raw ciphertexts on the common pool.
+     *
+     * @param privateKey
+     * @param cipherTexts
+     * @return
+     */
+    public static List<Result<byte[]>> decrypt(PrivateKey privateKey, List<byte[]> cipherTexts) {
+        return decrypt(privateKey, cipherTexts, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypt raw ciphertexts on the given pool.
+     *
+     * @param privateKey
+     * @param cipherTexts
+     * @param pool
+     * @return
+     */
+    public static List<Result<byte[]>> decrypt(PrivateKey privateKey, List<byte[]> cipherTexts, ForkJoinPool pool) {
+        return run(cipherTexts, pool, cipherText -> RSACipherPool.doFinal(privateKey, Cipher.DECRYPT_MODE, cipherText));
+    }
+
+    /**
+     * Decrypt the BASE64 strings made by {@link RSAUtil#encrypt(java.security.PublicKey, String)} on the common pool.
+     *
+     * @param privateKey
+     * @param enStrs
+     * @return
+     */
+    public static List<Result<String>> decryptStrings(PrivateKey privateKey, List<String> enStrs) {
+        return decryptStrings(privateKey, enStrs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypt the BASE64 strings made by {@link RSAUtil#encrypt(java.security.PublicKey, String)} on the given pool.
+     *
+     * @param privateKey
+     * @param enStrs
+     * @param pool
+     * @return
+     */
+    public static List<Result<String>> decryptStrings(PrivateKey privateKey, List<String> enStrs, ForkJoinPool pool) {
+        return run(enStrs, pool, enStr -> new String(
+                RSACipherPool.doFinal(privateKey, Cipher.DECRYPT_MODE, Base64.getMimeDecoder().decode(enStr)), RSAUtil.CHARSET));
+    }
+
+    /**
+     * Sign messages with {@link RSASignaturePool#ALGORITHM} on the common pool.
+     *
+     * @param privateKey
+     * @param messages
+     * @return
+     */
+    public static List<Result<byte[]>> sign(PrivateKey privateKey, List<byte[]> messages) {
+        return sign(privateKey, messages, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sign messages with {@link RSASignaturePool#ALGORITHM} on the given pool.
+     *
+     * @param privateKey
+     * @param messages
+     * @param pool
+     * @return
+     */
+    public static List<Result<byte[]>> sign(PrivateKey privateKey, List<byte[]> messages, ForkJoinPool pool) {
+        return run(messages, pool, message -> RSASignaturePool.sign(privateKey, message));
+    }
+
+    /**
+     * Verify signatures made with {@link RSASignaturePool#ALGORITHM} on the common pool.
+     *
+     * @param publicKey
+     * @param messages
+     * @param signatures signature of the message at the same index
+     * @return
+     */
+    public static List<Result<Boolean>> verify(PublicKey publicKey, List<byte[]> messages, List<byte[]> signatures) {
+        return verify(publicKey, messages, signatures, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verify signatures made with {@link RSASignaturePool#ALGORITHM} on the given pool.
+     *
+     * @param publicKey
+     * @param messages
+     * @param signatures signature of the message at the same index
+     * @param pool
+     * @return
+     */
+    public static List<Result<Boolean>> verify(PublicKey publicKey, List<byte[]> messages, List<byte[]> signatures,
+                                               ForkJoinPool pool) {
+        AssertUtils.notNullArgument(messages, "messages");
+        AssertUtils.notNullArgument(signatures, "signatures");
+        AssertUtils.checkArgument(messages.size() == signatures.size(),
+                "Wrong number of signatures: " + signatures.size() + ", messages: " + messages.size());
+        List<Integer> indexes = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            indexes.add(i);
+        }
+        return run(indexes, pool, i -> RSASignaturePool.verify(publicKey, messages.get(i), signatures.get(i)));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <I, T> List<Result<T>> run(List<I> inputs, ForkJoinPool pool, Operation<I, T> operation) {
+        AssertUtils.notNullArgument(inputs, "inputs");
+        AssertUtils.notNullArgument(pool, "pool");
+        Object[] inputArray = inputs.toArray();
+        Result<T>[] results = (Result<T>[]) new Result<?>[inputArray.length];
+        pool.invoke(new BatchTask<>((I[]) inputArray, results, operation, 0, inputArray.length));
+        List<Result<T>> list = new ArrayList<>(results.length);
+        Collections.addAll(list, results);
+        return list;
+    }
+
+    /**
+     * Apply the operation to a range of inputs, split in halves until the range is small enough.
+     */
+    private static final class BatchTask<I, T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final I[] inputs;
+        private final Result<T>[] results;
+        private final Operation<I, T> operation;
+        private final int from;
+        private final int to;
+
+        BatchTask(I[] inputs, Result<T>[] results, Operation<I, T> operation, int from, int to) {
+            this.inputs = inputs;
+            this.results = results;
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask<>(inputs, results, operation, from, middle),
+                        new BatchTask<>(inputs, results, operation, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = new Result<>(operation.apply(inputs[i]), null);
+                } catch (Exception e) {
+                    results[i] = new Result<>(null, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.touniba.common.util;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * Pool of RSA ciphers which are already initialized for a key and mode.
+ * <p>
+ * Every thread keeps its own few ciphers, so a cipher is never shared between threads and
+ * the private-key operations scale with the cores. A cipher is looked up by the identity of key,
+ * parse a key once and reuse the instance to benefit from the pool.
+ * <p>
+ * An initialized cipher holds its key, so a thread keeps up to {@link #CIPHERS_PER_THREAD} keys reachable,
+ * also the {@link java.util.concurrent.ForkJoinPool#commonPool()} workers used by {@link RSABatch}.
+ * {@link #invalidate()} makes every thread drop its ciphers on its next call, {@link RSAKeyCache} calls it when
+ * keys are cleared or a keystore is reloaded; an idle thread keeps its ciphers until then or until it ends.
+ */
+public class RSACipherPool {
+    public static final String TRANSFORMATION = "RSA";
+    /**
+     * Number of initialized ciphers kept by every thread.
+     */
+    public static final int CIPHERS_PER_THREAD = 8;
+
+    private static final ThreadLocal<Slots> SLOTS = ThreadLocal.withInitial(Slots::new);
+    /**
+     * Bumped by {@link #invalidate()}, slots of an older generation are dropped.
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    /**
+     * Drop the initialized ciphers of every thread, each thread does it on its next call.
+     * Call it after rotating keys so the old keys are not kept by the pooled ciphers.
+     */
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Encrypt or decrypt the input with a pooled cipher.
+     *
+     * @param key
+     * @param mode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}
+     * @param input
+     * @return
+     * @throws InvalidKeyException
+     * @throws IllegalBlockSizeException
+     * @throws BadPaddingException
+     */
+    public static byte[] doFinal(Key key, int mode, byte[] input)
+            throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+        return doFinal(key, mode, input, 0, input.length);
+    }
+
+    /**
+     * Encrypt or decrypt a range of input with a pooled cipher.
+     *
+     * @param key
+     * @param mode   {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}
+     * @param input
+     * @param offset
+     * @param length
+     * @return
+     * @throws InvalidKeyException
+     * @throws IllegalBlockSizeException
+     * @throws BadPaddingException
+     */
+    public static byte[] doFinal(Key key, int mode, byte[] input, int offset, int length)
+            throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+        Slots slots = SLOTS.get();
+        int slot = slots.acquire(key, mode);
+        try {
+            return slots.ciphers[slot].doFinal(input, offset, length);
+        } catch (IllegalBlockSizeException | BadPaddingException | RuntimeException e) {
+            slots.evict(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypt or decrypt the remaining input buffer into the output buffer with a pooled cipher.
+     *
+     * @param key
+     * @param mode   {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}
+     * @param input
+     * @param output
+     * @return number of bytes written to output
+     * @throws InvalidKeyException
+     * @throws IllegalBlockSizeException
+     * @throws BadPaddingException
+     * @throws ShortBufferException if output has not enough room
+     */
+    public static int doFinal(Key key, int mode, ByteBuffer input, ByteBuffer output)
+            throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException, ShortBufferException {
+        Slots slots = SLOTS.get();
+        int slot = slots.acquire(key, mode);
+        try {
+            return slots.ciphers[slot].doFinal(input, output);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException | RuntimeException e) {
+            slots.evict(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Initialized ciphers of a thread, replaced round robin.
+     */
+    private static final class Slots {
+        private final Key[] keys = new Key[CIPHERS_PER_THREAD];
+        private final int[] modes = new int[CIPHERS_PER_THREAD];
+        private final Cipher[] ciphers = new Cipher[CIPHERS_PER_THREAD];
+        private int next;
+        private int generation = GENERATION.get();
+
+        int acquire(Key key, int mode) throws InvalidKeyException {
+            int current = GENERATION.get();
+            if (current != generation) {
+                Arrays.fill(keys, null);
+                Arrays.fill(ciphers, null);
+                generation = current;
+            }
+            for (int i = 0; i < CIPHERS_PER_THREAD; i++) {
+                if (keys[i] == key && modes[i] == mode) {
+                    return i;
+                }
+            }
+            int i = next;
+            next = (next + 1) % CIPHERS_PER_THREAD;
+            Cipher cipher = null == ciphers[i] ? newCipher() : ciphers[i];
+            keys[i] = null;
+            cipher.init(mode, key);
+            keys[i] = key;
+            modes[i] = mode;
+            ciphers[i] = cipher;
+            return i;
+        }
+
+        void evict(int i) {
+            keys[i] = null;
+            ciphers[i] = null;
+        }
+
+        private static Cipher newCipher() {
+            try {
+                return Cipher.getInstance(TRANSFORMATION);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.touniba.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Hybrid RSA + AES envelope encryption for payloads of any size.
+ * <p>
+ * A random AES content key is wrapped with the RSA public key, the body is encrypted with AES-GCM
+ * in segments of {@link #SEGMENT_SIZE} bytes, every segment has its own nonce and tag,
+ * so both directions stream with constant memory. The layout is:
+ * <pre>
+ * magic(4) version(1) wrappedKeyLength(2) wrappedKey noncePrefix(7) segmentSize(4)
+ * segment* (ciphertext + 16 bytes tag, nonce = noncePrefix + segmentIndex(4) + lastFlag(1))
+ * </pre>
+ * The header is authenticated with every segment and the last segment is flagged,
+ * so tampering, reordering and truncation are all detected.
+ */
+public class RSAEnvelope {
+    public static final int SEGMENT_SIZE = 64 * 1024;
+    public static final String KEY_WRAP_TRANSFORMATION = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+    public static final String CONTENT_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int MAGIC = 0x52534531;
+    private static final byte VERSION = 1;
+    private static final int CONTENT_KEY_BITS = 128;
+    private static final int TAG_LEN = 16;
+    private static final int NONCE_PREFIX_LEN = 7;
+    private static final int NONCE_LEN = 12;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Encrypt all bytes of input to output, the streams are not closed.
+     *
+     * @param publicKey
+     * @param input
+     * @param output
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static void encrypt(PublicKey publicKey, InputStream input, OutputStream output)
+            throws IOException, GeneralSecurityException {
+        OutputStream encrypting = encryptingStream(publicKey, new NonClosingOutputStream(output));
+        copy(input, encrypting);
+        encrypting.close();
+    }
+
+    /**
+     * Decrypt an envelope from input to output, the streams are not closed.
+     *
+     * @param privateKey
+     * @param input
+     * @param output
+     * @throws IOException if the envelope is broken or has been tampered
+     * @throws GeneralSecurityException
+     */
+    public static void decrypt(PrivateKey privateKey, InputStream input, OutputStream output)
+            throws IOException, GeneralSecurityException {
+        copy(decryptingStream(privateKey, input), output);
+    }
+
+    public static void encrypt(PublicKey publicKey, ReadableByteChannel input, WritableByteChannel output)
+            throws IOException, GeneralSecurityException {
+        encrypt(publicKey, Channels.newInputStream(input), Channels.newOutputStream(output));
+    }
+
+    public static void decrypt(PrivateKey privateKey, ReadableByteChannel input, WritableByteChannel output)
+            throws IOException, GeneralSecurityException {
+        decrypt(privateKey, Channels.newInputStream(input), Channels.newOutputStream(output));
+    }
+
+    public static byte[] encrypt(PublicKey publicKey, byte[] plain) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length + plain.length / SEGMENT_SIZE * TAG_LEN + 512);
+        encrypt(publicKey, new ByteArrayInputStream(plain), out);
+        return out.toByteArray();
+    }
+
+    public static byte[] decrypt(PrivateKey privateKey, byte[] envelope) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(envelope.length);
+        decrypt(privateKey, new ByteArrayInputStream(envelope), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Open a stream which encrypts to output, the envelope is completed when the stream is closed.
+     *
+     * @param publicKey
+     * @param output
+     * @return
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static OutputStream encryptingStream(PublicKey publicKey, OutputStream output)
+            throws IOException, GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(CONTENT_KEY_BITS, RANDOM);
+        SecretKey contentKey = generator.generateKey();
+        Cipher wrapper = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        wrapper.init(Cipher.WRAP_MODE, publicKey, RANDOM);
+        byte[] wrappedKey = wrapper.wrap(contentKey);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LEN];
+        RANDOM.nextBytes(noncePrefix);
+
+        byte[] header = header(VERSION, wrappedKey, noncePrefix, SEGMENT_SIZE);
+        output.write(header);
+        return new EncryptingOutputStream(output, new Segments(contentKey, header, noncePrefix, SEGMENT_SIZE));
+    }
+
+    /**
+     * Open a stream which decrypts an envelope from input.
+     *
+     * @param privateKey
+     * @param input
+     * @return
+     * @throws IOException if the header is broken
+     * @throws GeneralSecurityException if the content key cannot be unwrapped
+     */
+    public static InputStream decryptingStream(PrivateKey privateKey, InputStream input)
+            throws IOException, GeneralSecurityException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an envelope");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported envelope version: " + version);
+        }
+        byte[] wrappedKey = new byte[in.readUnsignedShort()];
+        in.readFully(wrappedKey);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LEN];
+        in.readFully(noncePrefix);
+        int segmentSize = in.readInt();
+        if (segmentSize <= 0 || segmentSize > 64 * SEGMENT_SIZE) {
+            throw new IOException("Wrong segment size: " + segmentSize);
+        }
+
+        byte[] header = header(version, wrappedKey, noncePrefix, segmentSize);
+
+        Cipher unwrapper = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        unwrapper.init(Cipher.UNWRAP_MODE, privateKey);
+        Key contentKey = unwrapper.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+        return new DecryptingInputStream(input, new Segments(contentKey, header, noncePrefix, segmentSize));
+    }
+
+    private static byte[] header(byte version, byte[] wrappedKey, byte[] noncePrefix, int segmentSize) {
+        byte[] header = new byte[4 + 1 + 2 + wrappedKey.length + NONCE_PREFIX_LEN + 4];
+        int offset = BytesUtils.putInt(header, 0, MAGIC);
+        header[offset++] = version;
+        header[offset++] = (byte) (wrappedKey.length >>> 8);
+        header[offset++] = (byte) wrappedKey.length;
+        offset = BytesUtils.putBytes(header, offset, wrappedKey, 0, wrappedKey.length);
+        offset = BytesUtils.putBytes(header, offset, noncePrefix, 0, NONCE_PREFIX_LEN);
+        BytesUtils.putInt(header, offset, segmentSize);
+        return header;
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(8192);
+        try {
+            int size;
+            while ((size = input.read(buffer)) != -1) {
+                output.write(buffer, 0, size);
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Seals and opens the segments of one envelope.
+     */
+    private static final class Segments {
+        private final Key contentKey;
+        private final byte[] header;
+        private final byte[] nonce = new byte[NONCE_LEN];
+        private final int segmentSize;
+        private final Cipher cipher;
+        private int index;
+
+        Segments(Key contentKey, byte[] header, byte[] noncePrefix, int segmentSize) throws GeneralSecurityException {
+            this.contentKey = contentKey;
+            this.header = header;
+            this.segmentSize = segmentSize;
+            this.cipher = Cipher.getInstance(CONTENT_TRANSFORMATION);
+            System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_LEN);
+        }
+
+        /**
+         * Encrypt or decrypt the next segment in place of output.
+         */
+        int next(int mode, byte[] input, int length, byte[] output, boolean last) throws IOException {
+            if (index < 0) {
+                throw new IOException("Too many segments");
+            }
+            BytesUtils.putInt(nonce, NONCE_PREFIX_LEN, index++);
+            nonce[NONCE_LEN - 1] = (byte) (last ? 1 : 0);
+            try {
+                cipher.init(mode, contentKey, new GCMParameterSpec(TAG_LEN * 8, nonce));
+                cipher.updateAAD(header);
+                return cipher.doFinal(input, 0, length, output, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(mode == Cipher.DECRYPT_MODE ? "Envelope has been tampered" : "Cannot seal segment", e);
+            }
+        }
+    }
+
+    private static final class EncryptingOutputStream extends FilterOutputStream {
+        private final Segments segments;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int buffered;
+        private boolean closed;
+
+        EncryptingOutputStream(OutputStream out, Segments segments) {
+            super(out);
+            this.segments = segments;
+            this.plain = new byte[segments.segmentSize];
+            this.sealed = new byte[segments.segmentSize + TAG_LEN];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                // a full segment is sealed only when more data follows, the last one is sealed on close
+                if (buffered == plain.length) {
+                    seal(false);
+                }
+                int n = Math.min(len, plain.length - buffered);
+                System.arraycopy(b, off, plain, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            int n = segments.next(Cipher.ENCRYPT_MODE, plain, buffered, sealed, last);
+            out.write(sealed, 0, n);
+            buffered = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                seal(true);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final Segments segments;
+        private final byte[] sealed;
+        private final byte[] plain;
+        private int position;
+        private int limit;
+        /**
+         * First byte of the following segment, -1 if there is none.
+         */
+        private int lookahead = -2;
+        private boolean finished;
+
+        DecryptingInputStream(InputStream in, Segments segments) {
+            this.in = in;
+            this.segments = segments;
+            this.sealed = new byte[segments.segmentSize + TAG_LEN];
+            this.plain = new byte[segments.segmentSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == limit) {
+                if (finished) {
+                    return -1;
+                }
+                open();
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(plain, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private void open() throws IOException {
+            int length = 0;
+            if (lookahead == -2) {
+                lookahead = in.read();
+            }
+            if (lookahead == -1) {
+                throw new EOFException("Envelope is truncated");
+            }
+            sealed[length++] = (byte) lookahead;
+            while (length < sealed.length) {
+                int n = in.read(sealed, length, sealed.length - length);
+                if (n == -1) {
+                    break;
+                }
+                length += n;
+            }
+            lookahead = length == sealed.length ? in.read() : -1;
+            boolean last = lookahead == -1;
+            limit = segments.next(Cipher.DECRYPT_MODE, sealed, length, plain, last);
+            position = 0;
+            finished = last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.touniba.common.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of parsed RSA keys, keyed by the BASE64 key string or by the keystore path.
+ * <p>
+ * A keystore file is checked for a new modification time or size at most once per
+ * check interval, and parsed again only when it changed, so a rotated key is picked up
+ * without a restart while the steady state does no file I/O.
+ * <p>
+ * Clearing the cache or reloading a keystore also invalidates {@link RSACipherPool} and {@link RSASignaturePool},
+ * so the pooled ciphers and signatures of every thread stop holding the old keys.
+ */
+public class RSAKeyCache {
+    /**
+     * The cache is cleared when it holds more keys than this.
+     */
+    public static final int MAX_CACHED_KEYS = 1024;
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final ConcurrentMap<String, PublicKey> PUBLIC_KEYS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, PrivateKey> PRIVATE_KEYS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, KeyFile<PublicKey>> PUBLIC_KEY_FILES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, KeyFile<PrivateKey>> PRIVATE_KEY_FILES = new ConcurrentHashMap<>();
+
+    private static volatile long checkIntervalMillis = DEFAULT_CHECK_INTERVAL_MILLIS;
+
+    /**
+     * Parser of a BASE64 key string.
+     *
+     * @param <K>
+     */
+    private interface Parser<K extends Key> {
+        K parse(String key) throws Exception;
+    }
+
+    /**
+     * Set how often a keystore file is checked for changes, 0 checks on every call.
+     *
+     * @param millis
+     */
+    public static void setCheckIntervalMillis(long millis) {
+        AssertUtils.checkArgument(millis >= 0, "Wrong check interval: " + millis);
+        checkIntervalMillis = millis;
+    }
+
+    public static PublicKey getPublicKey(String key) throws Exception {
+        return get(PUBLIC_KEYS, key, RSAUtil::parsePublicKey);
+    }
+
+    public static PrivateKey getPrivateKey(String key) throws Exception {
+        return get(PRIVATE_KEYS, key, RSAUtil::parsePrivateKey);
+    }
+
+    /**
+     * Get the public key of a keystore file.
+     *
+     * @param keystore keystore path
+     * @return
+     * @throws Exception
+     */
+    public static PublicKey getPublicKeyOfFile(String keystore) throws Exception {
+        return getOfFile(PUBLIC_KEY_FILES, keystore, RSAUtil::parsePublicKey);
+    }
+
+    /**
+     * Get the private key of a keystore file.
+     *
+     * @param keystore keystore path
+     * @return
+     * @throws Exception
+     */
+    public static PrivateKey getPrivateKeyOfFile(String keystore) throws Exception {
+        return getOfFile(PRIVATE_KEY_FILES, keystore, RSAUtil::parsePrivateKey);
+    }
+
+    /**
+     * Drop all cached keys, and the pooled ciphers and signatures initialized with them.
+     */
+    public static void clear() {
+        PUBLIC_KEYS.clear();
+        PRIVATE_KEYS.clear();
+        PUBLIC_KEY_FILES.clear();
+        PRIVATE_KEY_FILES.clear();
+        invalidatePools();
+    }
+
+    private static <K extends Key> K get(ConcurrentMap<String, K> cache, String key, Parser<K> parser) throws Exception {
+        AssertUtils.notNullArgument(key, "key");
+        K parsed = cache.get(key);
+        if (null == parsed) {
+            parsed = parser.parse(key);
+            put(cache, key, parsed);
+        }
+        return parsed;
+    }
+
+    private static <K extends Key> K getOfFile(ConcurrentMap<String, KeyFile<K>> cache, String keystore, Parser<K> parser)
+            throws Exception {
+        AssertUtils.notNullArgument(keystore, "keystore");
+        long now = System.currentTimeMillis();
+        KeyFile<K> keyFile = cache.get(keystore);
+        if (null != keyFile && now - keyFile.checkedAt < checkIntervalMillis) {
+            return keyFile.key;
+        }
+        Path path = Paths.get(keystore);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        if (null != keyFile && keyFile.modified == modified && keyFile.size == size) {
+            keyFile.checkedAt = now;
+            return keyFile.key;
+        }
+        K key = parser.parse(readKeyString(path));
+        put(cache, keystore, new KeyFile<>(key, modified, size, now));
+        if (null != keyFile) {
+            // rotated, the old key must not stay in the pools
+            invalidatePools();
+        }
+        return key;
+    }
+
+    /**
+     * Read a keystore, the lines of key are joined.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    private static String readKeyString(Path path) throws IOException {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+        StringBuilder sb = new StringBuilder(content.length());
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c != '\r' && c != '\n') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static <V> void put(ConcurrentMap<String, V> cache, String key, V value) {
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+            invalidatePools();
+        }
+        cache.put(key, value);
+    }
+
+    private static void invalidatePools() {
+        RSACipherPool.invalidate();
+        RSASignaturePool.invalidate();
+    }
+
+    /**
+     * Key parsed from a keystore file.
+     *
+     * @param <K>
+     */
+    private static final class KeyFile<K extends Key> {
+        private final K key;
+        private final long modified;
+        private final long size;
+        private volatile long checkedAt;
+
+        KeyFile(K key, long modified, long size, long checkedAt) {
+            this.key = key;
+            this.modified = modified;
+            this.size = size;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
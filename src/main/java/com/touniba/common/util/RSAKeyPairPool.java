@@ -0,0 +1,153 @@
+package com.touniba.common.util;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supply of RSA key pairs generated ahead of time on a background thread.
+ * <p>
+ * The pool is refilled up to the high watermark whenever the number of ready pairs drops
+ * to the low watermark, so {@link #take()} normally returns a ready pair without generating one.
+ * When the pool is drained faster than it is refilled, {@link #take()} generates the pair on the
+ * calling thread.
+ * <p>
+ * The pool is opt-in: nothing in this library starts it, {@link RSAUtil#generateKeyPair()} stays
+ * synchronous, and the background thread only runs once a pool is created.
+ */
+public class RSAKeyPairPool {
+    public static final String ALGORITHM = "RSA";
+    public static final int DEFAULT_KEY_SIZE = 2048;
+    public static final int DEFAULT_LOW_WATERMARK = 2;
+    public static final int DEFAULT_HIGH_WATERMARK = 8;
+
+    private static volatile RSAKeyPairPool defaultPool;
+
+    private final int keySize;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final ConcurrentLinkedQueue<KeyPair> ready = new ConcurrentLinkedQueue<>();
+    /**
+     * Size of ready, {@link ConcurrentLinkedQueue#size()} is not constant time.
+     */
+    private final AtomicInteger readyCount = new AtomicInteger();
+    private final Object refillLock = new Object();
+    private final Thread refiller;
+    private volatile boolean closed;
+
+    /**
+     * @param keySize       key size in bits
+     * @param lowWatermark  refill starts when the number of ready pairs drops to this
+     * @param highWatermark refill stops when the number of ready pairs reaches this
+     */
+    public RSAKeyPairPool(int keySize, int lowWatermark, int highWatermark) {
+        AssertUtils.checkArgument(keySize >= 512, "Wrong key size: " + keySize);
+        AssertUtils.checkArgument(lowWatermark >= 0 && highWatermark > lowWatermark,
+                "Wrong watermarks: " + lowWatermark + ", " + highWatermark);
+        this.keySize = keySize;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        // fail here rather than on the background thread
+        newGenerator(keySize);
+        refiller = new Thread(this::refill, "rsa-keypair-pool-" + keySize);
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    /**
+     * Shared pool of {@link #DEFAULT_KEY_SIZE} bits keys, started on the first call of this method.
+     *
+     * @return
+     */
+    public static RSAKeyPairPool getDefault() {
+        RSAKeyPairPool pool = defaultPool;
+        if (null == pool) {
+            synchronized (RSAKeyPairPool.class) {
+                pool = defaultPool;
+                if (null == pool) {
+                    pool = new RSAKeyPairPool(DEFAULT_KEY_SIZE, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+                    defaultPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Take a ready key pair, or generate one on the calling thread when none is ready.
+     *
+     * @return
+     */
+    public KeyPair take() {
+        KeyPair keyPair = poll();
+        return null == keyPair ? newGenerator(keySize).generateKeyPair() : keyPair;
+    }
+
+    /**
+     * Take a ready key pair.
+     *
+     * @return null if none is ready
+     */
+    public KeyPair poll() {
+        AssertUtils.check(!closed, "Key pair pool is closed");
+        KeyPair keyPair = ready.poll();
+        if (null != keyPair && readyCount.decrementAndGet() <= lowWatermark) {
+            synchronized (refillLock) {
+                refillLock.notifyAll();
+            }
+        }
+        return keyPair;
+    }
+
+    /**
+     * @return number of ready key pairs
+     */
+    public int available() {
+        return readyCount.get();
+    }
+
+    public int getKeySize() {
+        return keySize;
+    }
+
+    /**
+     * Stop the background thread and drop the ready key pairs.
+     */
+    public void close() {
+        closed = true;
+        refiller.interrupt();
+        ready.clear();
+        readyCount.set(0);
+    }
+
+    private void refill() {
+        KeyPairGenerator generator = newGenerator(keySize);
+        try {
+            while (!closed) {
+                while (!closed && readyCount.get() < highWatermark) {
+                    ready.offer(generator.generateKeyPair());
+                    readyCount.incrementAndGet();
+                }
+                synchronized (refillLock) {
+                    while (!closed && readyCount.get() > lowWatermark) {
+                        refillLock.wait();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private static KeyPairGenerator newGenerator(int keySize) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(ALGORITHM);
+            generator.initialize(keySize);
+            return generator;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.touniba.common.util;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of RSA signatures which are already initialized for a key, see {@link RSACipherPool}.
+ * <p>
+ * Every thread keeps its own few {@link Signature} instances, a signature is looked up
+ * by the identity of key, parse a key once and reuse the instance to benefit from the pool.
+ * <p>
+ * An initialized signature holds its key, so a thread keeps up to {@link #SIGNATURES_PER_THREAD} keys reachable
+ * until {@link #invalidate()} is seen on its next call or the thread ends, as in {@link RSACipherPool}.
+ */
+public class RSASignaturePool {
+    public static final String ALGORITHM = "SHA256withRSA";
+    /**
+     * Number of initialized signatures kept by every thread.
+     */
+    public static final int SIGNATURES_PER_THREAD = 8;
+
+    private static final ThreadLocal<Slots> SLOTS = ThreadLocal.withInitial(Slots::new);
+    /**
+     * Bumped by {@link #invalidate()}, slots of an older generation are dropped.
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    /**
+     * Drop the initialized signatures of every thread, each thread does it on its next call.
+     * Call it after rotating keys so the old private keys are not kept by the pooled signatures.
+     */
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Sign data with a pooled signature.
+     *
+     * @param privateKey
+     * @param data
+     * @return
+     * @throws InvalidKeyException
+     * @throws SignatureException
+     */
+    public static byte[] sign(PrivateKey privateKey, byte[] data) throws InvalidKeyException, SignatureException {
+        return sign(privateKey, data, 0, data.length);
+    }
+
+    /**
+     * Sign a range of data with a pooled signature.
+     *
+     * @param privateKey
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     * @throws InvalidKeyException
+     * @throws SignatureException
+     */
+    public static byte[] sign(PrivateKey privateKey, byte[] data, int offset, int length)
+            throws InvalidKeyException, SignatureException {
+        Slots slots = SLOTS.get();
+        int slot = slots.acquireSign(privateKey);
+        try {
+            Signature signature = slots.signatures[slot];
+            signature.update(data, offset, length);
+            return signature.sign();
+        } catch (SignatureException | RuntimeException e) {
+            slots.evict(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Verify a signature of data with a pooled signature.
+     *
+     * @param publicKey
+     * @param data
+     * @param signature
+     * @return
+     * @throws InvalidKeyException
+     * @throws SignatureException
+     */
+    public static boolean verify(PublicKey publicKey, byte[] data, byte[] signature)
+            throws InvalidKeyException, SignatureException {
+        return verify(publicKey, data, 0, data.length, signature);
+    }
+
+    /**
+     * Verify a signature of a range of data with a pooled signature.
+     *
+     * @param publicKey
+     * @param data
+     * @param offset
+     * @param length
+     * @param signature
+     * @return
+     * @throws InvalidKeyException
+     * @throws SignatureException
+     */
+    public static boolean verify(PublicKey publicKey, byte[] data, int offset, int length, byte[] signature)
+            throws InvalidKeyException, SignatureException {
+        Slots slots = SLOTS.get();
+        int slot = slots.acquireVerify(publicKey);
+        try {
+            Signature verifier = slots.signatures[slot];
+            verifier.update(data, offset, length);
+            return verifier.verify(signature);
+        } catch (SignatureException | RuntimeException e) {
+            slots.evict(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Initialized signatures of a thread, replaced round robin.
+     */
+    private static final class Slots {
+        private final Object[] keys = new Object[SIGNATURES_PER_THREAD];
+        private final Signature[] signatures = new Signature[SIGNATURES_PER_THREAD];
+        private int next;
+        private int generation = GENERATION.get();
+
+        int acquireSign(PrivateKey key) throws InvalidKeyException {
+            int i = find(key);
+            if (i < 0) {
+                i = replace();
+                signatures[i].initSign(key);
+                keys[i] = key;
+            }
+            return i;
+        }
+
+        int acquireVerify(PublicKey key) throws InvalidKeyException {
+            int i = find(key);
+            if (i < 0) {
+                i = replace();
+                signatures[i].initVerify(key);
+                keys[i] = key;
+            }
+            return i;
+        }
+
+        private int find(Object key) {
+            int current = GENERATION.get();
+            if (current != generation) {
+                Arrays.fill(keys, null);
+                Arrays.fill(signatures, null);
+                generation = current;
+                return -1;
+            }
+            for (int i = 0; i < SIGNATURES_PER_THREAD; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int replace() {
+            int i = next;
+            next = (next + 1) % SIGNATURES_PER_THREAD;
+            keys[i] = null;
+            if (null == signatures[i]) {
+                signatures[i] = newSignature();
+            }
+            return i;
+        }
+
+        void evict(int i) {
+            keys[i] = null;
+            signatures[i] = null;
+        }
+
+        private static Signature newSignature() {
+            try {
+                return Signature.getInstance(ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.touniba.common.util;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.security.InvalidKeyException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyFactory;
 import java.security.KeyPair;
@@ -13,77 +14,60 @@ import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.SignatureException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-
-import sun.misc.BASE64Decoder;
-import sun.misc.BASE64Encoder;
 
 /**
  * @Author: 张恒(多多筹)
- * @Description: SA算法，实现数据的加密解密。
+ * @Description: SA算法，实现数据的加密解密。线程安全, 加解密使用{@link RSACipherPool}中已初始化的Cipher
  * @Date: 2018/10/17 10:58
  * @modified By:
  */
 public class RSAUtil {
-    private static Cipher cipher;
+    /**
+     * 明文字符串的编码
+     */
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+    /**
+     * 不换行的BASE64编码
+     */
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    /**
+     * 忽略换行等非BASE64字符, 兼容sun.misc.BASE64Encoder的输出
+     */
+    private static final Base64.Decoder BASE64_DECODER = Base64.getMimeDecoder();
 
-    static {
+    /**
+     * 生成2048位密钥对, 在调用线程上同步生成; 需要预生成时显式使用{@link RSAKeyPairPool}
+     *
+     * @return
+     */
+    public static KeyPair generateKeyPair() {
         try {
-            cipher = Cipher.getInstance("RSA");
+            KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance("RSA");
+            // 密钥位数
+            keyPairGen.initialize(2048);
+            return keyPairGen.generateKeyPair();
         } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (NoSuchPaddingException e) {
-            e.printStackTrace();
+            throw new IllegalStateException(e);
         }
     }
 
     /**
-     * 生成密钥对
+     * 生成密钥对并写入文件
      *
      * @param filePath 生成密钥的路径
      * @return
      */
     public static Map<String, String> generateKeyPair(String filePath) {
         try {
-            KeyPairGenerator keyPairGen = KeyPairGenerator.getInstance("RSA");
-            // 密钥位数
-            keyPairGen.initialize(2048);
-            // 密钥对
-            KeyPair keyPair = keyPairGen.generateKeyPair();
-            // 公钥
-            PublicKey publicKey = keyPair.getPublic();
-            // 私钥
-            PrivateKey privateKey = keyPair.getPrivate();
-            //得到公钥字符串
-            String publicKeyString = getKeyString(publicKey);
-            //得到私钥字符串
-            String privateKeyString = getKeyString(privateKey);
-            //将密钥对写入到文件
-            FileWriter pubfw = new FileWriter(filePath + "/publicKey.keystore");
-            FileWriter prifw = new FileWriter(filePath + "/privateKey.keystore");
-            BufferedWriter pubbw = new BufferedWriter(pubfw);
-            BufferedWriter pribw = new BufferedWriter(prifw);
-            pubbw.write(publicKeyString);
-            pribw.write(privateKeyString);
-            pubbw.flush();
-            pubbw.close();
-            pubfw.close();
-            pribw.flush();
-            pribw.close();
-            prifw.close();
-            //将生成的密钥对返回
-            Map<String, String> map = new HashMap<String, String>();
-            map.put("publicKey", publicKeyString);
-            map.put("privateKey", privateKeyString);
-            return map;
+            return saveKeyPair(generateKeyPair(), filePath);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -91,14 +75,49 @@ public class RSAUtil {
     }
 
     /**
-     * 得到公钥
+     * 将密钥对写入publicKey.keystore和privateKey.keystore
+     *
+     * @param keyPair  密钥对
+     * @param filePath 密钥文件的路径
+     * @return 公钥和私钥字符串
+     * @throws IOException
+     */
+    public static Map<String, String> saveKeyPair(KeyPair keyPair, String filePath) throws IOException {
+        //得到公钥字符串
+        String publicKeyString = getKeyString(keyPair.getPublic());
+        //得到私钥字符串
+        String privateKeyString = getKeyString(keyPair.getPrivate());
+        //将密钥对写入到文件
+        try (BufferedWriter pubbw = new BufferedWriter(new FileWriter(filePath + "/publicKey.keystore"));
+             BufferedWriter pribw = new BufferedWriter(new FileWriter(filePath + "/privateKey.keystore"))) {
+            pubbw.write(publicKeyString);
+            pribw.write(privateKeyString);
+        }
+        //将生成的密钥对返回
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("publicKey", publicKeyString);
+        map.put("privateKey", privateKeyString);
+        return map;
+    }
+
+    /**
+     * 得到公钥, 解析结果由{@link RSAKeyCache}缓存
      *
      * @param key 密钥字符串（经过base64编码）
      * @throws Exception
      */
     public static PublicKey getPublicKey(String key) throws Exception {
-        byte[] keyBytes;
-        keyBytes = (new BASE64Decoder()).decodeBuffer(key);
+        return RSAKeyCache.getPublicKey(key);
+    }
+
+    /**
+     * 解析公钥
+     *
+     * @param key 密钥字符串（经过base64编码）
+     * @throws Exception
+     */
+    static PublicKey parsePublicKey(String key) throws Exception {
+        byte[] keyBytes = BASE64_DECODER.decode(key);
         X509EncodedKeySpec keySpec = new X509EncodedKeySpec(keyBytes);
         KeyFactory keyFactory = KeyFactory.getInstance("RSA");
         PublicKey publicKey = keyFactory.generatePublic(keySpec);
@@ -106,14 +125,23 @@ public class RSAUtil {
     }
 
     /**
-     * 得到私钥
+     * 得到私钥, 解析结果由{@link RSAKeyCache}缓存
      *
      * @param key 密钥字符串（经过base64编码）
      * @throws Exception
      */
     public static PrivateKey getPrivateKey(String key) throws Exception {
-        byte[] keyBytes;
-        keyBytes = (new BASE64Decoder()).decodeBuffer(key);
+        return RSAKeyCache.getPrivateKey(key);
+    }
+
+    /**
+     * 解析私钥
+     *
+     * @param key 密钥字符串（经过base64编码）
+     * @throws Exception
+     */
+    static PrivateKey parsePrivateKey(String key) throws Exception {
+        byte[] keyBytes = BASE64_DECODER.decode(key);
         PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(keyBytes);
         KeyFactory keyFactory = KeyFactory.getInstance("RSA");
         PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
@@ -125,10 +153,94 @@ public class RSAUtil {
      *
      * @return
      */
-    public static String getKeyString(Key key) throws Exception {
+    public static String getKeyString(Key key) {
         byte[] keyBytes = key.getEncoded();
-        String s = (new BASE64Encoder()).encode(keyBytes);
-        return s;
+        return BASE64_ENCODER.encodeToString(keyBytes);
+    }
+
+    /**
+     * 使用公钥对明文进行加密
+     *
+     * @param publicKey 公钥
+     * @param plain     明文
+     * @return 密文
+     * @throws GeneralSecurityException
+     */
+    public static byte[] encrypt(PublicKey publicKey, byte[] plain) throws GeneralSecurityException {
+        return RSACipherPool.doFinal(publicKey, Cipher.ENCRYPT_MODE, plain);
+    }
+
+    /**
+     * 使用公钥对缓冲区中剩余的明文进行加密, 密文写入输出缓冲区
+     *
+     * @param publicKey 公钥
+     * @param plain     明文
+     * @param output    密文输出
+     * @return 写入的字节数
+     * @throws GeneralSecurityException
+     */
+    public static int encrypt(PublicKey publicKey, ByteBuffer plain, ByteBuffer output) throws GeneralSecurityException {
+        return RSACipherPool.doFinal(publicKey, Cipher.ENCRYPT_MODE, plain, output);
+    }
+
+    /**
+     * 使用私钥对密文进行解密
+     *
+     * @param privateKey 私钥
+     * @param enBytes    密文
+     * @return 明文
+     * @throws GeneralSecurityException
+     */
+    public static byte[] decrypt(PrivateKey privateKey, byte[] enBytes) throws GeneralSecurityException {
+        return RSACipherPool.doFinal(privateKey, Cipher.DECRYPT_MODE, enBytes);
+    }
+
+    /**
+     * 使用私钥对缓冲区中剩余的密文进行解密, 明文写入输出缓冲区
+     *
+     * @param privateKey 私钥
+     * @param enBytes    密文
+     * @param output     明文输出
+     * @return 写入的字节数
+     * @throws GeneralSecurityException
+     */
+    public static int decrypt(PrivateKey privateKey, ByteBuffer enBytes, ByteBuffer output) throws GeneralSecurityException {
+        return RSACipherPool.doFinal(privateKey, Cipher.DECRYPT_MODE, enBytes, output);
+    }
+
+    /**
+     * 使用公钥对明文进行加密, BASE64编码的密文写入调用方提供的数组
+     *
+     * @param publicKey 公钥
+     * @param plain     明文
+     * @param dst       输出数组, 长度至少为{@link #base64Length(int)}
+     * @return 写入的字节数
+     * @throws GeneralSecurityException
+     */
+    public static int encryptToBase64(PublicKey publicKey, byte[] plain, byte[] dst) throws GeneralSecurityException {
+        return BASE64_ENCODER.encode(encrypt(publicKey, plain), dst);
+    }
+
+    /**
+     * 使用私钥对BASE64编码的密文进行解密, 兼容带换行的旧格式
+     *
+     * @param privateKey 私钥
+     * @param base64     BASE64编码的密文
+     * @return 明文
+     * @throws GeneralSecurityException
+     */
+    public static byte[] decryptFromBase64(PrivateKey privateKey, byte[] base64) throws GeneralSecurityException {
+        return decrypt(privateKey, BASE64_DECODER.decode(base64));
+    }
+
+    /**
+     * 得到BASE64编码后的长度
+     *
+     * @param length 原始字节数
+     * @return
+     */
+    public static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
     }
 
     /**
@@ -140,21 +252,15 @@ public class RSAUtil {
      */
     public static String encrypt(PublicKey publicKey, String plainText) {
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-            byte[] enBytes = cipher.doFinal(plainText.getBytes());
-            return (new BASE64Encoder()).encode(enBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
-        } catch (BadPaddingException e) {
+            return BASE64_ENCODER.encodeToString(encrypt(publicKey, plainText.getBytes(CHARSET)));
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
         }
         return null;
     }
 
     /**
-     * 使用keystore对明文进行加密
+     * 使用keystore对明文进行加密, 密钥文件修改后自动重新加载
      *
      * @param publicKeystore 公钥文件路径
      * @param plainText      明文
@@ -162,24 +268,7 @@ public class RSAUtil {
      */
     public static String fileEncrypt(String publicKeystore, String plainText) {
         try {
-            FileReader fr = new FileReader(publicKeystore);
-            BufferedReader br = new BufferedReader(fr);
-            String publicKeyString = "";
-            String str;
-            while ((str = br.readLine()) != null) {
-                publicKeyString += str;
-            }
-            br.close();
-            fr.close();
-            cipher.init(Cipher.ENCRYPT_MODE, getPublicKey(publicKeyString));
-            byte[] enBytes = cipher.doFinal(plainText.getBytes());
-            return (new BASE64Encoder()).encode(enBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
+            return encrypt(RSAKeyCache.getPublicKeyOfFile(publicKeystore), plainText);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -195,15 +284,7 @@ public class RSAUtil {
      */
     public static String encrypt(String publicKey, String plainText) {
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, getPublicKey(publicKey));
-            byte[] enBytes = cipher.doFinal(plainText.getBytes());
-            return (new BASE64Encoder()).encode(enBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
+            return encrypt(getPublicKey(publicKey), plainText);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -219,16 +300,11 @@ public class RSAUtil {
      */
     public static String decrypt(PrivateKey privateKey, String enStr) {
         try {
-            cipher.init(Cipher.DECRYPT_MODE, privateKey);
-            byte[] deBytes = cipher.doFinal((new BASE64Decoder()).decodeBuffer(enStr));
-            return new String(deBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
+            byte[] deBytes = decrypt(privateKey, BASE64_DECODER.decode(enStr));
+            return new String(deBytes, CHARSET);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
+        } catch (IllegalArgumentException e) {
             e.printStackTrace();
         }
         return null;
@@ -243,17 +319,7 @@ public class RSAUtil {
      */
     public static String decrypt(String privateKey, String enStr) {
         try {
-            cipher.init(Cipher.DECRYPT_MODE, getPrivateKey(privateKey));
-            byte[] deBytes = cipher.doFinal((new BASE64Decoder()).decodeBuffer(enStr));
-            return new String(deBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return decrypt(getPrivateKey(privateKey), enStr);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -261,7 +327,7 @@ public class RSAUtil {
     }
 
     /**
-     * 使用keystore对密文进行解密
+     * 使用keystore对密文进行解密, 密钥文件修改后自动重新加载
      *
      * @param privateKeystore 私钥路径
      * @param enStr           密文
@@ -269,32 +335,84 @@ public class RSAUtil {
      */
     public static String fileDecrypt(String privateKeystore, String enStr) {
         try {
-            FileReader fr = new FileReader(privateKeystore);
-            BufferedReader br = new BufferedReader(fr);
-            String privateKeyString = "";
-            String str;
-            while ((str = br.readLine()) != null) {
-                privateKeyString += str;
-            }
-            br.close();
-            fr.close();
-            cipher.init(Cipher.DECRYPT_MODE, getPrivateKey(privateKeyString));
-            byte[] deBytes = cipher.doFinal((new BASE64Decoder()).decodeBuffer(enStr));
-            return new String(deBytes);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return decrypt(RSAKeyCache.getPrivateKeyOfFile(privateKeystore), enStr);
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * 使用私钥对数据进行签名, 签名算法为{@link RSASignaturePool#ALGORITHM}
+     *
+     * @param privateKey 私钥
+     * @param data       数据
+     * @return 签名
+     * @throws GeneralSecurityException
+     */
+    public static byte[] sign(PrivateKey privateKey, byte[] data) throws GeneralSecurityException {
+        return RSASignaturePool.sign(privateKey, data);
+    }
+
+    /**
+     * 使用公钥验证数据的签名
+     *
+     * @param publicKey 公钥
+     * @param data      数据
+     * @param signature 签名
+     * @return
+     * @throws GeneralSecurityException
+     */
+    public static boolean verify(PublicKey publicKey, byte[] data, byte[] signature) throws GeneralSecurityException {
+        return RSASignaturePool.verify(publicKey, data, signature);
+    }
+
+    /**
+     * 使用私钥对内容进行签名
+     *
+     * @param privateKey 私钥
+     * @param content    内容
+     * @return BASE64编码的签名
+     * @throws GeneralSecurityException 私钥无法解析或签名失败时
+     */
+    public static String sign(String privateKey, String content) throws GeneralSecurityException {
+        PrivateKey key;
+        try {
+            key = getPrivateKey(privateKey);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GeneralSecurityException("Failed to parse private key", e);
+        }
+        return BASE64_ENCODER.encodeToString(sign(key, content.getBytes(CHARSET)));
+    }
+
+    /**
+     * 使用公钥验证内容的签名, 签名来自外部输入, 格式错误时不打印异常
+     *
+     * @param publicKey 公钥
+     * @param content   内容
+     * @param sign      BASE64编码的签名
+     * @return 签名错误或格式错误时返回false
+     * @throws IllegalStateException 公钥无法解析时
+     */
+    public static boolean verify(String publicKey, String content, String sign) {
+        PublicKey key;
+        try {
+            key = getPublicKey(publicKey);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to parse public key", e);
+        }
+        try {
+            return verify(key, content.getBytes(CHARSET), BASE64_DECODER.decode(sign));
+        } catch (IllegalArgumentException | SignatureException e) {
+            // malformed base64 or signature
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to verify signature", e);
+        }
+    }
+
     public static void main(String[] args) {
 //    	generateKeyPair("D:/RSA");
 
@@ -1,8 +1,8 @@
 package com.touniba.common.util;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @Author: 张恒(多多筹)
@@ -11,6 +11,7 @@ import java.security.NoSuchAlgorithmException;
  * @modified By:
  */
 public class SignUtil {
+    private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
 
     /**
      * 通过指定算法签名字符串
@@ -21,6 +22,7 @@ public class SignUtil {
      * @param toLowerCase 指定是否返回小写形式的十六进制字符串
      * @return String algorithm digest as a lowerCase hex string
      * @see Calculates the algorithm digest and returns the value as a hex string
+     * @see The digest instance is cached by {@link DigestSigner}, use it directly for HMAC
      * @see If system dosen't support this <code>algorithm</code>, return "" not null
      * @see It will Calls {@link TradePortalUtil#getBytes(String str, String charset)}
      * @see 若系统不支持<code>charset</code>字符集,则按照系统默认字符集进行转换
@@ -28,39 +30,42 @@ public class SignUtil {
      * @see 另外,commons-codec.jar提供的DigestUtils.md5Hex(String data)与本方法getHexSign(data, "UTF-8", "MD5", false)效果相同
      */
     public static String getHexSign(String data, String charset, String algorithm, boolean toLowerCase) {
-        char[] DIGITS_LOWER = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
-        char[] DIGITS_UPPER = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
-        //Used to build output as Hex
-        char[] DIGITS = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
         //get byte[] from {@link TradePortalUtil#getBytes(String, String)}
         byte[] dataBytes = getBytes(data, charset);
-        byte[] algorithmData = null;
-        try {
-            //get an algorithm digest instance
-            algorithmData = MessageDigest.getInstance(algorithm).digest(dataBytes);
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("NoSuchAlgorithmException");
+        //get the cached signer of algorithm
+        DigestSigner signer = DigestSigner.lookup(algorithm);
+        if (null == signer) {
             return "";
         }
-        char[] respData = new char[algorithmData.length << 1];
-        //two characters form the hex value
-        for (int i = 0, j = 0; i < algorithmData.length; i++) {
-            respData[j++] = DIGITS[(0xF0 & algorithmData[i]) >>> 4];
-            respData[j++] = DIGITS[0x0F & algorithmData[i]];
-        }
-        return new String(respData);
+        return HexUtils.encodeHex(signer.sign(dataBytes), toLowerCase);
     }
 
     public static byte[] getBytes(String data, String charset) {
         data = (data == null ? "" : data);
+        Charset resolved = charset(charset);
+        return null == resolved ? data.getBytes() : data.getBytes(resolved);
+    }
+
+    /**
+     * 解析字符集并缓存
+     *
+     * @param charset 字符集名称
+     * @return 字符集, 若为空或系统不支持则返回null
+     */
+    public static Charset charset(String charset) {
         if (StringUtil.isEmpty(charset)) {
-            return data.getBytes();
+            return null;
         }
-        try {
-            return data.getBytes(charset);
-        } catch (UnsupportedEncodingException e) {
-            return data.getBytes();
+        Charset resolved = CHARSETS.get(charset);
+        if (null == resolved) {
+            try {
+                resolved = Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            CHARSETS.putIfAbsent(charset, resolved);
         }
+        return resolved;
     }
 
 }
@@ -0,0 +1,79 @@
+package com.touniba.common.util;
+
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+
+import sun.misc.Unsafe;
+
+/**
+ * Compares byte arrays 8 bytes per step with {@code sun.misc.Unsafe}, the only word-wide array read on Java 8.
+ * <p>
+ * Kept apart from {@link BytesUtils} so the internal API is referenced from this class only; BytesUtils loads
+ * it reflectively and falls back to a byte loop when Unsafe or unaligned access isn't available.
+ */
+final class UnsafeBytesComparer {
+    private static final Unsafe UNSAFE;
+    /**
+     * The offset to the first element in a byte array.
+     */
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    static {
+        String arch = System.getProperty("os.arch", "");
+        AssertUtils.check(arch.equals("amd64") || arch.equals("x86_64") || arch.equals("i386") || arch.equals("x86")
+                        || arch.equals("aarch64") || arch.equals("ppc64le") || arch.equals("s390x"),
+                "Unaligned access not supported on " + arch);
+        try {
+            Field f = Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (Unsafe) f.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+        AssertUtils.check(UNSAFE.arrayIndexScale(byte[].class) == 1, "Unexpected byte array index scale");
+    }
+
+    private UnsafeBytesComparer() {
+    }
+
+    /**
+     * Touch the class so a failed initialization shows up in {@link BytesUtils} and not on the first compare.
+     */
+    static boolean available() {
+        return null != UNSAFE;
+    }
+
+    /**
+     * Lexicographically compare two ranges as unsigned bytes, the ranges must already be checked.
+     */
+    static int compareTo(byte[] buffer1, int offset1, int length1,
+                         byte[] buffer2, int offset2, int length2) {
+        int minLength = Math.min(length1, length2);
+        int wordsEnd = minLength & ~(BytesUtils.SIZEOF_LONG - 1);
+        long offset1Adj = offset1 + BYTE_ARRAY_BASE_OFFSET;
+        long offset2Adj = offset2 + BYTE_ARRAY_BASE_OFFSET;
+        for (int i = 0; i < wordsEnd; i += BytesUtils.SIZEOF_LONG) {
+            long lw = UNSAFE.getLong(buffer1, offset1Adj + i);
+            long rw = UNSAFE.getLong(buffer2, offset2Adj + i);
+            long diff = lw ^ rw;
+            if (diff != 0) {
+                if (!LITTLE_ENDIAN) {
+                    return Long.compareUnsigned(lw, rw);
+                }
+                // the first differing byte is the lowest non zero byte of diff
+                int n = Long.numberOfTrailingZeros(diff) & ~7;
+                return (int) (((lw >>> n) & 0xFF) - ((rw >>> n) & 0xFF));
+            }
+        }
+        for (int i = wordsEnd; i < minLength; i++) {
+            int a = (buffer1[offset1 + i] & 0xff);
+            int b = (buffer2[offset2 + i] & 0xff);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length1 - length2;
+    }
+}